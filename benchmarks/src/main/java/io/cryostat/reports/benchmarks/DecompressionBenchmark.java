@@ -0,0 +1,91 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmc.common.io.IOToolkit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compressed-upload handling: detection plus decompression to a temporary file, as in {@code
+ * ReportResource#decompress}, versus decompressing into a sink without touching the disk, as in
+ * streaming decompression mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DecompressionBenchmark {
+
+    @Param({"1", "8"})
+    int scale;
+
+    Path recording;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        recording = Recordings.create(scale, true);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws IOException {
+        Files.deleteIfExists(recording);
+    }
+
+    @Benchmark
+    public long decompressToFile() throws IOException {
+        if (!IOToolkit.isCompressedFile(recording.toFile())) {
+            throw new IllegalStateException();
+        }
+        Path tmp = Files.createTempFile(null, null);
+        try (InputStream stream = IOToolkit.openUncompressedStream(recording.toFile())) {
+            return Files.copy(stream, tmp, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    @Benchmark
+    public long decompressStreaming() throws IOException {
+        if (!IOToolkit.isCompressedFile(recording.toFile())) {
+            throw new IllegalStateException();
+        }
+        try (InputStream stream = IOToolkit.openUncompressedStream(recording.toFile())) {
+            return stream.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Materializes benchmark input recordings on disk. Larger recordings are synthesized by
+ * concatenating copies of the bundled sample: a JFR file is a sequence of self-contained chunks,
+ * so the concatenation is itself a valid multi-chunk recording.
+ */
+final class Recordings {
+
+    static final String SAMPLE = "profiling_sample.jfr";
+
+    private Recordings() {}
+
+    /**
+     * @param scale the number of copies of the sample recording to concatenate
+     * @param compressed whether to GZIP the resulting recording
+     */
+    static Path create(int scale, boolean compressed) throws IOException {
+        byte[] sample;
+        try (InputStream in = Recordings.class.getClassLoader().getResourceAsStream(SAMPLE)) {
+            if (in == null) {
+                throw new IOException(SAMPLE + " not found on classpath");
+            }
+            sample = in.readAllBytes();
+        }
+        Path file = Files.createTempFile("benchmark-", compressed ? ".jfr.gz" : ".jfr");
+        file.toFile().deleteOnExit();
+        try (OutputStream out = open(file, compressed)) {
+            for (int i = 0; i < scale; i++) {
+                out.write(sample);
+            }
+        }
+        return file;
+    }
+
+    private static OutputStream open(Path file, boolean compressed) throws IOException {
+        OutputStream out = Files.newOutputStream(file);
+        if (compressed) {
+            return new GZIPOutputStream(out, 64 * 1024);
+        }
+        return out;
+    }
+}
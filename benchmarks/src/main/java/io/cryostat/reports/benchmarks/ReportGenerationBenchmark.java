@@ -0,0 +1,113 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import io.cryostat.core.log.Logger;
+import io.cryostat.core.reports.InterruptibleReportGenerator;
+import io.cryostat.core.reports.InterruptibleReportGenerator.AnalysisResult;
+import io.cryostat.core.util.RuleFilterParser;
+
+import org.openjdk.jmc.common.io.IOToolkit;
+import org.openjdk.jmc.flightrecorder.rules.IRule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JFR parsing and rule evaluation through {@link InterruptibleReportGenerator}, with and without a
+ * rule filter, using both the single-threaded and the multi-threaded JMC parser.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ReportGenerationBenchmark {
+
+    private static final String SINGLETHREAD_PROPERTY =
+            "-Dorg.openjdk.jmc.flightrecorder.parser.singlethreaded";
+
+    @Param({"1", "8"})
+    int scale;
+
+    @Param({"false", "true"})
+    boolean compressed;
+
+    /** An empty filter selects every rule. */
+    @Param({"", "heap"})
+    String filter;
+
+    Path recording;
+    Predicate<IRule> predicate;
+    ExecutorService executor;
+    InterruptibleReportGenerator generator;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        recording = Recordings.create(scale, compressed);
+        predicate = new RuleFilterParser().parse(filter.isEmpty() ? null : filter);
+        executor = Executors.newSingleThreadExecutor();
+        generator = new InterruptibleReportGenerator(executor, Logger.INSTANCE);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws IOException {
+        executor.shutdownNow();
+        Files.deleteIfExists(recording);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = SINGLETHREAD_PROPERTY + "=true")
+    public Map<String, AnalysisResult> singleThreadedParser()
+            throws IOException, InterruptedException, ExecutionException {
+        return evaluate();
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = SINGLETHREAD_PROPERTY + "=false")
+    public Map<String, AnalysisResult> multiThreadedParser()
+            throws IOException, InterruptedException, ExecutionException {
+        return evaluate();
+    }
+
+    private Map<String, AnalysisResult> evaluate()
+            throws IOException, InterruptedException, ExecutionException {
+        try (InputStream stream = IOToolkit.openUncompressedStream(recording.toFile())) {
+            return generator.generateEvalMapInterruptibly(stream, predicate).get();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports.benchmarks;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import io.cryostat.core.log.Logger;
+import io.cryostat.core.reports.InterruptibleReportGenerator;
+import io.cryostat.core.reports.InterruptibleReportGenerator.AnalysisResult;
+import io.cryostat.core.util.RuleFilterParser;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmc.common.io.IOToolkit;
+import org.openjdk.jmc.flightrecorder.rules.IRule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** JSON serialization of the result map, as done at the end of {@code ReportResource#getEval}. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SerializationBenchmark {
+
+    Map<String, AnalysisResult> results;
+    ObjectWriter writer;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        Path recording = Recordings.create(1, false);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Predicate<IRule> predicate = new RuleFilterParser().parse(null);
+        try (InputStream stream = IOToolkit.openUncompressedStream(recording.toFile())) {
+            results =
+                    new InterruptibleReportGenerator(executor, Logger.INSTANCE)
+                            .generateEvalMapInterruptibly(stream, predicate)
+                            .get();
+        } finally {
+            executor.shutdownNow();
+            Files.deleteIfExists(recording);
+        }
+        writer = new ObjectMapper().writer();
+    }
+
+    @Benchmark
+    public String newMapperPerRequest() throws JsonProcessingException {
+        return new ObjectMapper().writeValueAsString(results);
+    }
+
+    @Benchmark
+    public String sharedWriter() throws JsonProcessingException {
+        return writer.writeValueAsString(results);
+    }
+}
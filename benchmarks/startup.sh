@@ -0,0 +1,75 @@
+#!/bin/sh
+# Measures, for each packaging of the service, the time from launch until it is ready, the time
+# from launch until the first report has been returned, the latency of that first report and of a
+# second, steady-state report, and the resident set size after the first report and at its peak.
+#
+# Build the packagings to compare first, for example:
+#   ./mvnw package
+#   ./mvnw package -Pnative,native-init
+
+set -e
+
+if [ -z "${MODES}" ]; then
+    MODES="jvm native"
+fi
+
+if [ -z "${PORT}" ]; then
+    PORT=8181
+fi
+
+if [ -z "${RECORDING}" ]; then
+    RECORDING="$(dirname "$0")/../src/test/resources/profiling_sample.jfr"
+fi
+
+if [ -z "${TARGET}" ]; then
+    TARGET="$(dirname "$0")/../target"
+fi
+
+now_ms() {
+    date +%s%3N
+}
+
+report() {
+    curl -sf -o /dev/null -F "file=@${RECORDING}" "http://localhost:${PORT}/report" \
+        -H "Accept: application/json"
+}
+
+printf "%-8s %10s %16s %10s %10s %10s %10s\n" \
+    mode ready_ms first_report_ms first_ms steady_ms rss_kb peak_kb
+
+for mode in ${MODES}; do
+    case "${mode}" in
+        jvm)
+            set -- java ${JAVA_OPTS} -Dquarkus.http.port="${PORT}" \
+                -jar "${TARGET}/quarkus-app/quarkus-run.jar"
+            ;;
+        native)
+            set -- "$(ls "${TARGET}"/*-runner | head -n 1)" -Dquarkus.http.port="${PORT}"
+            ;;
+        *)
+            echo "unknown mode ${mode}" >&2
+            exit 1
+            ;;
+    esac
+    launched="$(now_ms)"
+    "$@" > "${TARGET}/startup-${mode}.log" 2>&1 &
+    pid=$!
+    until curl -sf -o /dev/null "http://localhost:${PORT}/health"; do
+        if ! kill -0 "${pid}" 2>/dev/null; then
+            echo "${mode} exited, see ${TARGET}/startup-${mode}.log" >&2
+            exit 1
+        fi
+        sleep 0.01
+    done
+    ready="$(now_ms)"
+    report
+    first="$(now_ms)"
+    rss="$(awk '/^VmRSS/ { print $2 }' "/proc/${pid}/status")"
+    report
+    steady="$(now_ms)"
+    peak="$(awk '/^VmHWM/ { print $2 }' "/proc/${pid}/status")"
+    kill "${pid}"
+    wait "${pid}" || true
+    printf "%-8s %10d %16d %10d %10d %10d %10d\n" "${mode}" $((ready - launched)) \
+        $((first - launched)) $((first - ready)) $((steady - first)) "${rss}" "${peak}"
+done
@@ -0,0 +1,92 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Polls the service's Prometheus metrics for its heap usage, summed over all heap pools, and keeps
+ * the highest value seen. The peak between samples is missed, so the result is a lower bound.
+ */
+class HeapSampler implements AutoCloseable {
+
+    private static final String METRIC = "jvm_memory_used_bytes{";
+
+    private final HttpClient client;
+    private final HttpRequest request;
+    private final AtomicLong peak = new AtomicLong(-1);
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(
+                    r -> {
+                        Thread t = new Thread(r, "heap-sampler");
+                        t.setDaemon(true);
+                        return t;
+                    });
+
+    HeapSampler(HttpClient client, URI base, long periodMs) {
+        this.client = client;
+        this.request =
+                HttpRequest.newBuilder(base.resolve("/q/metrics"))
+                        .timeout(Duration.ofSeconds(5))
+                        .GET()
+                        .build();
+        scheduler.scheduleAtFixedRate(this::sample, 0, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** @return the highest heap usage seen in bytes, or -1 if metrics were not available */
+    long peak() {
+        return peak.get();
+    }
+
+    private void sample() {
+        try {
+            HttpResponse<String> response =
+                    client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                return;
+            }
+            long used = 0;
+            for (String line : response.body().split("\n")) {
+                if (line.startsWith(METRIC) && line.contains("area=\"heap\"")) {
+                    used += (long) Double.parseDouble(line.substring(line.lastIndexOf(' ') + 1));
+                }
+            }
+            peak.accumulateAndGet(used, Math::max);
+        } catch (Exception e) {
+            // the service may be too busy to answer, which is no reason to fail the run
+        }
+    }
+
+    /** Stop sampling, taking a last sample. */
+    long stop() {
+        scheduler.shutdownNow();
+        sample();
+        return peak();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Uploads recordings to a running instance of the service from a number of concurrent clients,
+ * then reports throughput, latency percentiles, rejection rates and the service's peak heap usage,
+ * and fails if any configured threshold is violated. Everything is configured through system
+ * properties prefixed with {@code loadtest.}; see the README.
+ */
+public class LoadTest {
+
+    private static final String PREFIX = "loadtest.";
+
+    public static void main(String[] args) throws Exception {
+        URI base = URI.create(property("url", "http://localhost:8080"));
+        int concurrency = Integer.parseInt(property("concurrency", "4"));
+        int requests = Integer.parseInt(property("requests", "100"));
+        int warmup = Integer.parseInt(property("warmup", "4"));
+        boolean compressed = Boolean.parseBoolean(property("compressed", "false"));
+        // the service caches results by digest, which would otherwise answer most requests
+        boolean distinct = Boolean.parseBoolean(property("distinct", "true"));
+        String filter = property("filter", "");
+
+        List<Path> recordings = new ArrayList<>();
+        for (String scale : property("scales", "1,4").split(",")) {
+            recordings.add(Recordings.create(Integer.parseInt(scale.strip()), compressed));
+        }
+
+        HttpClient client =
+                HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_1_1)
+                        .connectTimeout(Duration.ofSeconds(10))
+                        .build();
+        URI report = base.resolve("/report");
+
+        System.out.printf("Warming up with %d requests against %s%n", warmup, base);
+        for (int i = 0; i < warmup; i++) {
+            Path recording = recordings.get(i % recordings.size());
+            upload(client, report, recording, prefix(recording, compressed, distinct, i), filter);
+        }
+
+        System.out.printf(
+                "Sending %d requests from %d clients, recordings: %s%n",
+                requests, concurrency, recordings);
+        List<Results.Sample> samples = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        try (HeapSampler heap =
+                new HeapSampler(client, base, Long.parseLong(property("heap-period", "250")))) {
+            long start = System.nanoTime();
+            for (int c = 0; c < concurrency; c++) {
+                clients.execute(
+                        () -> {
+                            int i;
+                            while ((i = next.getAndIncrement()) < requests) {
+                                Path recording = recordings.get(i % recordings.size());
+                                samples.add(
+                                        upload(
+                                                client,
+                                                report,
+                                                recording,
+                                                prefix(
+                                                        recording,
+                                                        compressed,
+                                                        distinct,
+                                                        warmup + i),
+                                                filter));
+                            }
+                        });
+            }
+            clients.shutdown();
+            clients.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+            long wall = System.nanoTime() - start;
+            Results results = new Results(samples, wall, heap.stop());
+            System.out.println(results);
+            finish(results);
+        }
+    }
+
+    private static void finish(Results results) throws IOException {
+        String output = property("output", "");
+        if (!output.isBlank()) {
+            Properties saved = new Properties();
+            results.values().forEach((name, value) -> saved.setProperty(name, value.toString()));
+            try (OutputStream out = Files.newOutputStream(Path.of(output))) {
+                saved.store(out, "cryostat-reports load test results");
+            }
+        }
+
+        Map<String, Double> limits = new LinkedHashMap<>();
+        limit(limits, "min-throughput", Results.THROUGHPUT);
+        limit(limits, "max-p50-ms", Results.P50_MS);
+        limit(limits, "max-p99-ms", Results.P99_MS);
+        limit(limits, "max-413-rate", Results.RATE_413);
+        limit(limits, "max-503-rate", Results.RATE_503);
+        limit(limits, "max-504-rate", Results.RATE_504);
+        limit(limits, "max-error-rate", Results.ERROR_RATE);
+        limit(limits, "max-peak-heap", Results.PEAK_HEAP);
+        Results baseline = null;
+        String baselineFile = property("baseline", "");
+        if (!baselineFile.isBlank()) {
+            Properties saved = new Properties();
+            try (InputStream in = Files.newInputStream(Path.of(baselineFile))) {
+                saved.load(in);
+            }
+            Map<String, Double> values = new LinkedHashMap<>();
+            saved.stringPropertyNames()
+                    .forEach(name -> values.put(name, Double.parseDouble(saved.getProperty(name))));
+            baseline = new Results(values);
+        }
+        double tolerance = Double.parseDouble(property("tolerance", "0.2"));
+
+        List<String> violations = new Thresholds(limits, baseline, tolerance).check(results);
+        if (!violations.isEmpty()) {
+            violations.forEach(v -> System.err.println("FAILED: " + v));
+            System.exit(1);
+        }
+    }
+
+    /** The altered start of the upload, or null to upload the recording as it is. */
+    private static byte[] prefix(Path recording, boolean compressed, boolean distinct, int index) {
+        return distinct ? Recordings.distinctPrefix(recording, compressed, index) : null;
+    }
+
+    private static Results.Sample upload(
+            HttpClient client, URI report, Path recording, byte[] prefix, String filter) {
+        String boundary = UUID.randomUUID().toString();
+        StringBuilder head = new StringBuilder();
+        if (!filter.isBlank()) {
+            head.append("--").append(boundary).append("\r\n");
+            head.append("Content-Disposition: form-data; name=\"filter\"\r\n\r\n");
+            head.append(filter).append("\r\n");
+        }
+        head.append("--").append(boundary).append("\r\n");
+        head.append("Content-Disposition: form-data; name=\"file\"; filename=\"")
+                .append(recording.getFileName())
+                .append("\"\r\n");
+        head.append("Content-Type: application/octet-stream\r\n\r\n");
+        String tail = "\r\n--" + boundary + "--\r\n";
+        long start = System.nanoTime();
+        try {
+            HttpRequest.BodyPublisher file =
+                    prefix == null
+                            ? HttpRequest.BodyPublishers.ofFile(recording)
+                            : HttpRequest.BodyPublishers.concat(
+                                    HttpRequest.BodyPublishers.ofByteArray(prefix),
+                                    HttpRequest.BodyPublishers.ofInputStream(
+                                            () -> remainder(recording, prefix.length)));
+            HttpRequest request =
+                    HttpRequest.newBuilder(report)
+                            .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                            .header("Accept", "application/json")
+                            .POST(
+                                    HttpRequest.BodyPublishers.concat(
+                                            HttpRequest.BodyPublishers.ofString(
+                                                    head.toString(), StandardCharsets.UTF_8),
+                                            file,
+                                            HttpRequest.BodyPublishers.ofString(
+                                                    tail, StandardCharsets.UTF_8)))
+                            .build();
+            HttpResponse<Void> response =
+                    client.send(request, HttpResponse.BodyHandlers.discarding());
+            return new Results.Sample(response.statusCode(), System.nanoTime() - start);
+        } catch (IOException e) {
+            return new Results.Sample(-1, System.nanoTime() - start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Results.Sample(-1, System.nanoTime() - start);
+        }
+    }
+
+    private static InputStream remainder(Path recording, int skip) {
+        try {
+            InputStream in = Files.newInputStream(recording);
+            in.skipNBytes(skip);
+            return in;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void limit(Map<String, Double> limits, String property, String result) {
+        String value = property(property, "");
+        if (!value.isBlank()) {
+            limits.put(result, Double.parseDouble(value));
+        }
+    }
+
+    private static String property(String name, String defaultValue) {
+        return System.getProperty(PREFIX + name, defaultValue);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Materializes the recordings to upload. Larger recordings are synthesized by concatenating copies
+ * of the bundled sample: a JFR file is a sequence of self-contained chunks, so the concatenation is
+ * itself a valid multi-chunk recording. Uploads can be made distinct from each other by varying a
+ * field in their first few bytes which does not affect the analysis, so that the service has to
+ * analyze every one of them rather than answering from its caches.
+ */
+final class Recordings {
+
+    static final String SAMPLE = "profiling_sample.jfr";
+
+    // the start time of the first chunk of a recording, in nanoseconds since the epoch
+    private static final int CHUNK_START_OFFSET = 32;
+    private static final int CHUNK_HEADER_SIZE = 48;
+    // the modification time of a GZIP member, which GZIPOutputStream leaves as zero
+    private static final int GZIP_MTIME_OFFSET = 4;
+    private static final int GZIP_HEADER_SIZE = 10;
+
+    private Recordings() {}
+
+    /**
+     * @param scale the number of copies of the sample recording to concatenate
+     * @param compressed whether to GZIP the resulting recording
+     */
+    static Path create(int scale, boolean compressed) throws IOException {
+        byte[] sample;
+        try (InputStream in = Recordings.class.getClassLoader().getResourceAsStream(SAMPLE)) {
+            if (in == null) {
+                throw new IOException(SAMPLE + " not found on classpath");
+            }
+            sample = in.readAllBytes();
+        }
+        Path file =
+                Files.createTempFile(
+                        "loadtest-x" + scale + "-", compressed ? ".jfr.gz" : ".jfr");
+        file.toFile().deleteOnExit();
+        try (OutputStream out = open(file, compressed)) {
+            for (int i = 0; i < scale; i++) {
+                out.write(sample);
+            }
+        }
+        return file;
+    }
+
+    /**
+     * The first bytes of the recording, altered so that the upload numbered {@code index} differs
+     * from every other. The rest of the upload is the rest of the file, unchanged.
+     */
+    static byte[] distinctPrefix(Path recording, boolean compressed, int index) {
+        int length = compressed ? GZIP_HEADER_SIZE : CHUNK_HEADER_SIZE;
+        byte[] prefix = new byte[length];
+        try (InputStream in = Files.newInputStream(recording)) {
+            if (in.readNBytes(prefix, 0, length) != length) {
+                throw new IOException(recording + " is too short");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(prefix);
+        if (compressed) {
+            // little-endian seconds; any value is valid
+            buffer.put(GZIP_MTIME_OFFSET, (byte) index)
+                    .put(GZIP_MTIME_OFFSET + 1, (byte) (index >>> 8))
+                    .put(GZIP_MTIME_OFFSET + 2, (byte) (index >>> 16))
+                    .put(GZIP_MTIME_OFFSET + 3, (byte) (index >>> 24));
+        } else {
+            // moves the chunk by a few nanoseconds, which no rule can notice
+            buffer.putLong(CHUNK_START_OFFSET, buffer.getLong(CHUNK_START_OFFSET) + index);
+        }
+        return prefix;
+    }
+
+    private static OutputStream open(Path file, boolean compressed) throws IOException {
+        OutputStream out = Files.newOutputStream(file);
+        if (compressed) {
+            return new GZIPOutputStream(out, 64 * 1024);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports.loadtest;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/** The outcome of a run, summarized as named values which can be saved and used as a baseline. */
+class Results {
+
+    static final String THROUGHPUT = "throughput";
+    static final String P50_MS = "p50.ms";
+    static final String P99_MS = "p99.ms";
+    static final String RATE_413 = "rate.413";
+    static final String RATE_503 = "rate.503";
+    static final String RATE_504 = "rate.504";
+    static final String ERROR_RATE = "rate.error";
+    static final String PEAK_HEAP = "peak.heap";
+
+    /** @param status the response status, or -1 if the request failed without a response */
+    record Sample(int status, long latencyNanos) {}
+
+    private final Map<String, Double> values = new LinkedHashMap<>();
+    private final Map<Integer, Integer> statuses;
+
+    Results(List<Sample> samples, long wallNanos, long peakHeap) {
+        int total = samples.size();
+        long[] latencies =
+                samples.stream()
+                        .filter(s -> s.status() == 200)
+                        .mapToLong(Sample::latencyNanos)
+                        .sorted()
+                        .toArray();
+        statuses = new LinkedHashMap<>();
+        samples.forEach(s -> statuses.merge(s.status(), 1, Integer::sum));
+        double seconds = wallNanos / 1e9;
+        values.put(THROUGHPUT, latencies.length / seconds);
+        values.put(P50_MS, percentileMs(latencies, 0.50));
+        values.put(P99_MS, percentileMs(latencies, 0.99));
+        values.put(RATE_413, rate(413, total));
+        values.put(RATE_503, rate(503, total));
+        values.put(RATE_504, rate(504, total));
+        values.put(ERROR_RATE, total == 0 ? 0 : (double) (total - latencies.length) / total);
+        values.put(PEAK_HEAP, (double) peakHeap);
+    }
+
+    Results(Map<String, Double> values) {
+        this.values.putAll(values);
+        this.statuses = Map.of();
+    }
+
+    Map<String, Double> values() {
+        return values;
+    }
+
+    double get(String name) {
+        return values.getOrDefault(name, Double.NaN);
+    }
+
+    Map<Integer, Integer> statuses() {
+        return statuses;
+    }
+
+    private double rate(int status, int total) {
+        return total == 0 ? 0 : (double) statuses.getOrDefault(status, 0) / total;
+    }
+
+    private static double percentileMs(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        long nanos = sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        values.forEach((name, value) -> sb.append(String.format("%-12s %14.3f%n", name, value)));
+        sb.append("statuses     ").append(Arrays.toString(statuses.entrySet().toArray()));
+        return sb.toString();
+    }
+}
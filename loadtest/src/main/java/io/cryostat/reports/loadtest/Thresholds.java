@@ -0,0 +1,87 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fails a run whose results are worse than absolute limits, or than a baseline run by more than a
+ * tolerance. Throughput is better when higher; latencies, rejection rates and heap are better when
+ * lower.
+ */
+class Thresholds {
+
+    private static final List<String> HIGHER_IS_BETTER = List.of(Results.THROUGHPUT);
+
+    private final Map<String, Double> limits;
+    private final Results baseline;
+    private final double tolerance;
+
+    /**
+     * @param limits absolute limits by result name, minimums for throughput and maximums otherwise
+     * @param baseline a previous run to compare against, or null
+     * @param tolerance the fraction by which a result may be worse than the baseline
+     */
+    Thresholds(Map<String, Double> limits, Results baseline, double tolerance) {
+        this.limits = limits;
+        this.baseline = baseline;
+        this.tolerance = tolerance;
+    }
+
+    /** @return a description of each threshold the results violate */
+    List<String> check(Results results) {
+        List<String> violations = new ArrayList<>();
+        limits.forEach(
+                (name, limit) -> {
+                    double value = results.get(name);
+                    if (worse(name, value, limit)) {
+                        violations.add(
+                                String.format("%s %.3f is beyond limit %.3f", name, value, limit));
+                    }
+                });
+        if (baseline != null) {
+            baseline.values()
+                    .forEach(
+                            (name, base) -> {
+                                double value = results.get(name);
+                                if (base <= 0 || Double.isNaN(base) || Double.isNaN(value)) {
+                                    return;
+                                }
+                                double allowed =
+                                        HIGHER_IS_BETTER.contains(name)
+                                                ? base * (1 - tolerance)
+                                                : base * (1 + tolerance);
+                                if (worse(name, value, allowed)) {
+                                    violations.add(
+                                            String.format(
+                                                    "%s %.3f regressed from baseline %.3f by more"
+                                                            + " than %.0f%%",
+                                                    name, value, base, tolerance * 100));
+                                }
+                            });
+        }
+        return violations;
+    }
+
+    private static boolean worse(String name, double value, double limit) {
+        if (Double.isNaN(value)) {
+            return true;
+        }
+        return HIGHER_IS_BETTER.contains(name) ? value < limit : value > limit;
+    }
+}
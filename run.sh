@@ -25,11 +25,19 @@ if [ -z "${TIMEOUT}" ]; then
     TIMEOUT=30000
 fi
 
+if [ -z "${STREAMING_DECOMPRESSION}" ]; then
+    STREAMING_DECOMPRESSION="false"
+fi
+
+if [ -z "${REQUEST_THREADS}" ]; then
+    REQUEST_THREADS="worker"
+fi
+
 podman run \
     --user 0 \
     --cpus "${CPUS}" \
     --memory "${MEMORY}" \
     --publish 8080:8080 \
-    --env JAVA_OPTS="-XX:ActiveProcessorCount=${CPUS} -XX:+PrintCommandLineFlags -Dorg.openjdk.jmc.flightrecorder.parser.singlethreaded=${SINGLETHREAD_JFR_PARSE} -Dio.cryostat.reports.memory-factor=${MEMORY_FACTOR} -Dio.cryostat.reports.timeout=${TIMEOUT}" \
+    --env JAVA_OPTS="-XX:ActiveProcessorCount=${CPUS} -XX:+PrintCommandLineFlags -Dorg.openjdk.jmc.flightrecorder.parser.singlethreaded=${SINGLETHREAD_JFR_PARSE} -Dio.cryostat.reports.memory-factor=${MEMORY_FACTOR} -Dio.cryostat.reports.timeout=${TIMEOUT} -Dio.cryostat.reports.streaming-decompression=${STREAMING_DECOMPRESSION} -Dio.cryostat.reports.parse.chunk-parallelism=${CPUS} -Dio.cryostat.reports.request.threads=${REQUEST_THREADS}" \
     --rm -it \
     quay.io/cryostat/cryostat-reports:latest
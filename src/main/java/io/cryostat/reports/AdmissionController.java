@@ -0,0 +1,275 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.ClientErrorException;
+import jakarta.ws.rs.ServiceUnavailableException;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+/**
+ * Keeps a ledger of the heap reserved by in-flight reports. Each request is charged its estimated
+ * heap cost, as predicted by the {@link HeapEstimator}, before analysis begins, and that
+ * reservation is held until the request completes. A request whose cost could never fit within
+ * the budget is rejected with 413, and a request that does not fit alongside the current
+ * reservations waits for other reports to finish, up to a configurable limit, before being
+ * rejected with 503. Heap retained by the {@link ParsedRecordingCache} and by
+ * {@link IncrementalAnalyses} is reserved from the same budget, and is reclaimed before a request
+ * is made to wait. Requests for recordings which could never fit are normally diverted to
+ * {@link LargeRecordings} before they get here.
+ */
+@ApplicationScoped
+public class AdmissionController {
+
+    @ConfigProperty(name = "io.cryostat.reports.admission.budget", defaultValue = "0")
+    String budgetBytes;
+
+    @ConfigProperty(name = "io.cryostat.reports.admission.max-wait", defaultValue = "5000")
+    String maxWaitMs;
+
+    @ConfigProperty(name = "io.cryostat.reports.analysis.retry-after", defaultValue = "5")
+    String retryAfterSeconds;
+
+    @Inject ParsedRecordingCache parsedCache;
+    @Inject IncrementalAnalyses incremental;
+
+    private final Logger logger = Logger.getLogger(AdmissionController.class);
+
+    // a lock rather than this monitor, so that virtual threads waiting for capacity do not pin
+    // their carrier threads
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private long budget;
+    private long reserved;
+    private long retained;
+    private int inFlight;
+    private int waiting;
+    private final AtomicLong rejected = new AtomicLong();
+
+    void onStart(@Observes StartupEvent ev) {
+        long configured = Long.parseLong(budgetBytes);
+        if (configured > 0) {
+            budget = configured;
+        } else {
+            Runtime runtime = Runtime.getRuntime();
+            long used = runtime.totalMemory() - runtime.freeMemory();
+            budget = runtime.maxMemory() - used;
+        }
+        logger.infof("Admission budget: %dM", budget / (1024 * 1024));
+    }
+
+    /**
+     * Reserve heap for analysing a recording.
+     *
+     * @param cost the estimated heap cost of analysing the recording, in bytes
+     * @param timeoutNanos the remaining time budget of the request, bounding how long this call
+     *     may wait for other reservations to be released
+     */
+    public Reservation reserve(long cost, long timeoutNanos) throws InterruptedException {
+        long maxWait = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(maxWaitMs));
+        return reserve(cost, true, Math.min(timeoutNanos, maxWait));
+    }
+
+    /**
+     * Reserve heap for analysing a recording, waiting for as long as it takes for other
+     * reservations to be released. Meant for bulk work, where throughput matters more than the
+     * latency of any one recording.
+     */
+    public Reservation reserveWhenAvailable(long cost) throws InterruptedException {
+        return reserve(cost, false, 0);
+    }
+
+    private Reservation reserve(long cost, boolean bounded, long waitNanos)
+            throws InterruptedException {
+        long shortfall = shortfall(cost);
+        if (shortfall > 0 && cost <= budget) {
+            // called without holding the lock, as evicting releases reservations
+            parsedCache.reclaim(Math.min(shortfall, retained()));
+            shortfall = shortfall(cost);
+            if (shortfall > 0) {
+                incremental.reclaim(Math.min(shortfall, retained()));
+            }
+        }
+        lock.lock();
+        try {
+            if (cost > budget) {
+                rejected.incrementAndGet();
+                throw new ClientErrorException(Response.Status.REQUEST_ENTITY_TOO_LARGE);
+            }
+            long remaining = waitNanos;
+            waiting++;
+            try {
+                while (reserved + cost > budget) {
+                    if (!bounded) {
+                        released.await();
+                        continue;
+                    }
+                    if (remaining <= 0) {
+                        rejected.incrementAndGet();
+                        throw new ServiceUnavailableException(Long.parseLong(retryAfterSeconds));
+                    }
+                    remaining = released.awaitNanos(remaining);
+                }
+            } finally {
+                waiting--;
+            }
+            reserved += cost;
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+        return new Reservation(cost, false);
+    }
+
+    /**
+     * Reserve heap for retaining a parsed recording, only if it fits within the budget right away.
+     * Retained reservations are not counted as in-flight reports.
+     */
+    public Optional<Reservation> tryReserve(long cost) {
+        lock.lock();
+        try {
+            if (reserved + cost > budget) {
+                return Optional.empty();
+            }
+            reserved += cost;
+            retained += cost;
+            return Optional.of(new Reservation(cost, true));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long shortfall(long cost) {
+        lock.lock();
+        try {
+            return reserved + cost - budget;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long retained() {
+        lock.lock();
+        try {
+            return retained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean grow(Reservation reservation, long cost) {
+        lock.lock();
+        try {
+            long extra = cost - reservation.cost;
+            if (extra <= 0) {
+                return true;
+            }
+            if (reservation.released.get() || reserved + extra > budget) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            reserved += extra;
+            if (reservation.retention) {
+                retained += extra;
+            }
+            reservation.cost = cost;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(Reservation reservation) {
+        lock.lock();
+        try {
+            reserved -= reservation.cost;
+            if (reservation.retention) {
+                retained -= reservation.cost;
+            } else {
+                inFlight--;
+            }
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long budget() {
+        lock.lock();
+        try {
+            return budget;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public AdmissionStats stats() {
+        lock.lock();
+        try {
+            return new AdmissionStats(
+                    budget, reserved, retained, inFlight, waiting, rejected.get());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public record AdmissionStats(
+            long budget, long reserved, long retained, int inFlight, int waiting, long rejected) {}
+
+    public class Reservation implements AutoCloseable {
+        private volatile long cost;
+        private final boolean retention;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Reservation(long cost, boolean retention) {
+            this.cost = cost;
+            this.retention = retention;
+        }
+
+        public long cost() {
+            return cost;
+        }
+
+        /**
+         * Grow the reservation to the given cost, only if the budget can cover the difference
+         * right away, for a recording found to need more heap than it was admitted with.
+         *
+         * @return whether the reservation now covers the cost
+         */
+        public boolean grow(long cost) {
+            return AdmissionController.this.grow(this, cost);
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                release(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed-size pool used for report analysis, with a bounded queue so that bursts of uploads are
+ * rejected quickly rather than all being slowed down together. Tasks submitted from a thread that
+ * already belongs to this pool are run inline on the submitting thread, so that work which fans
+ * out and then waits on its own subtasks cannot deadlock the pool. Work which can make use of idle
+ * threads instead {@link #fork forks} onto them.
+ */
+public class AnalysisExecutor extends ThreadPoolExecutor {
+
+    private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    public AnalysisExecutor(int parallelism, int queueSize) {
+        super(
+                parallelism,
+                parallelism,
+                0L,
+                TimeUnit.MILLISECONDS,
+                createQueue(queueSize),
+                new AnalysisThreadFactory());
+    }
+
+    private static BlockingQueue<Runnable> createQueue(int queueSize) {
+        if (queueSize > 0) {
+            return new ArrayBlockingQueue<>(queueSize);
+        }
+        return new SynchronousQueue<>();
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (Thread.currentThread() instanceof AnalysisThread) {
+            command.run();
+            return;
+        }
+        try {
+            super.execute(command);
+        } catch (RejectedExecutionException ree) {
+            rejected.incrementAndGet();
+            throw ree;
+        }
+    }
+
+    /**
+     * Run the tasks on the calling thread, helped by as many of this pool's idle threads as the
+     * parallelism allows. The calling thread and its helpers take the tasks in order until none
+     * are left, and the calling thread waits only for tasks which a helper has already started, so
+     * forking never waits for capacity, and cannot deadlock when called from the pool's own
+     * threads. Helpers do not count as rejected when the pool has no room for them, and once a
+     * task fails, or the calling thread is interrupted, the remaining tasks are cancelled.
+     *
+     * @param parallelism the most threads to run the tasks on, including the calling thread
+     * @return the results of the tasks, in order
+     * @throws ExecutionException with the failure of the first task to fail, in order
+     */
+    public <T> List<T> fork(List<? extends Callable<T>> tasks, int parallelism)
+            throws InterruptedException, ExecutionException {
+        List<FutureTask<T>> futures = new ArrayList<>(tasks.size());
+        tasks.forEach(task -> futures.add(new FutureTask<>(task)));
+        AtomicInteger next = new AtomicInteger();
+        Runnable worker =
+                () -> {
+                    for (int i = next.getAndIncrement();
+                            i < futures.size();
+                            i = next.getAndIncrement()) {
+                        futures.get(i).run();
+                    }
+                };
+        List<FutureTask<Void>> helpers = new ArrayList<>();
+        try {
+            int idle = getMaximumPoolSize() - getActiveCount();
+            int wanted = Math.min(Math.min(parallelism, futures.size()) - 1, idle);
+            for (int i = 0; i < wanted; i++) {
+                FutureTask<Void> helper = new FutureTask<>(worker, null);
+                try {
+                    super.execute(helper);
+                } catch (RejectedExecutionException e) {
+                    break;
+                }
+                helpers.add(helper);
+            }
+            worker.run();
+            List<T> results = new ArrayList<>(futures.size());
+            for (FutureTask<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+            helpers.forEach(this::remove);
+        }
+    }
+
+    /**
+     * @return true if a newly submitted task would currently be rejected
+     */
+    public boolean isSaturated() {
+        return getActiveCount() >= getMaximumPoolSize() && getQueue().remainingCapacity() == 0;
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public ExecutorStats stats() {
+        return new ExecutorStats(
+                getMaximumPoolSize(),
+                getActiveCount(),
+                getQueue().size(),
+                getRejectedCount(),
+                getCompletedTaskCount());
+    }
+
+    public record ExecutorStats(
+            int parallelism, int active, int queued, long rejected, long completed) {}
+
+    static class AnalysisThread extends Thread {
+        AnalysisThread(Runnable r, String name) {
+            super(r, name);
+            setDaemon(true);
+        }
+    }
+
+    private static class AnalysisThreadFactory implements java.util.concurrent.ThreadFactory {
+        private final int pool = POOL_COUNT.incrementAndGet();
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            return new AnalysisThread(
+                    r, String.format("analysis-%d-%d", pool, count.incrementAndGet()));
+        }
+    }
+}
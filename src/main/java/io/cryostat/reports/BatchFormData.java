@@ -0,0 +1,37 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import java.util.List;
+
+import jakarta.ws.rs.core.MediaType;
+import org.jboss.resteasy.reactive.PartType;
+import org.jboss.resteasy.reactive.RestForm;
+import org.jboss.resteasy.reactive.multipart.FileUpload;
+
+public class BatchFormData {
+    @RestForm("file")
+    @PartType(MediaType.APPLICATION_OCTET_STREAM)
+    public List<FileUpload> files;
+
+    @RestForm
+    @PartType(MediaType.TEXT_PLAIN)
+    public String filter;
+
+    @RestForm
+    @PartType(MediaType.APPLICATION_JSON)
+    public String filters;
+}
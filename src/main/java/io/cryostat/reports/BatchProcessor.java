@@ -0,0 +1,322 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.cryostat.core.util.RuleFilterParser;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.subscription.MultiEmitter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.ServiceUnavailableException;
+import jakarta.ws.rs.WebApplicationException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import org.openjdk.jmc.common.io.IOToolkit;
+
+/**
+ * Analyzes batches of recordings, emitting each recording's result as soon as it is available.
+ * At most {@code io.cryostat.reports.batch.parallelism} recordings, across all batches, are
+ * analyzed at once. Each recording is charged against the shared admission budget, waiting for
+ * as long as it takes rather than being rejected, and is resubmitted if the analysis executor is
+ * saturated by interactive requests, up to {@code io.cryostat.reports.batch.max-resubmits} times
+ * before the recording fails with 503.
+ */
+@ApplicationScoped
+public class BatchProcessor {
+
+    private static final long RESUBMIT_DELAY_MS = 100;
+
+    @ConfigProperty(name = "io.cryostat.reports.batch.parallelism", defaultValue = "2")
+    String parallelism;
+
+    @ConfigProperty(name = "io.cryostat.reports.ingest.mmap", defaultValue = "false")
+    String mappedIngest;
+
+    @ConfigProperty(name = "io.cryostat.reports.batch.max-resubmits", defaultValue = "600")
+    String maxResubmits;
+
+    @ConfigProperty(name = "io.cryostat.reports.analysis.retry-after", defaultValue = "5")
+    String retryAfterSeconds;
+
+    @Inject AdmissionController admission;
+    @Inject HeapEstimator estimator;
+    @Inject LargeRecordings largeRecordings;
+    @Inject RecordingAnalyzer analyzer;
+    @Inject ReportCache cache;
+    @Inject ReportSerializer serializer;
+    @Inject ParsedRecordingCache parsedCache;
+
+    private final Logger logger = Logger.getLogger(BatchProcessor.class);
+    private final RuleFilterParser rfp = new RuleFilterParser();
+
+    private ExecutorService coordinators;
+    private Semaphore permits;
+
+    @PostConstruct
+    void init() {
+        permits = new Semaphore(Math.max(1, Integer.parseInt(parallelism)));
+        AtomicInteger count = new AtomicInteger();
+        coordinators =
+                Executors.newCachedThreadPool(
+                        r -> {
+                            Thread t =
+                                    new Thread(
+                                            r,
+                                            String.format(
+                                                    "batch-coordinator-%d",
+                                                    count.incrementAndGet()));
+                            t.setDaemon(true);
+                            return t;
+                        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        coordinators.shutdownNow();
+    }
+
+    public record Entry(RecordingArchives.Recording recording, String filter) {}
+
+    /**
+     * Analyze the given recordings. Temporary recording files are deleted once the batch has
+     * finished or has been cancelled by the subscriber.
+     */
+    public Multi<BatchResult> process(List<Entry> entries) {
+        return Multi.createFrom()
+                .emitter(
+                        emitter -> {
+                            Future<?> coordinator =
+                                    coordinators.submit(() -> run(entries, emitter));
+                            emitter.onTermination(() -> coordinator.cancel(true));
+                        });
+    }
+
+    private void run(List<Entry> entries, MultiEmitter<? super BatchResult> emitter) {
+        List<Future<?>> analyses = new ArrayList<>();
+        CountDownLatch pending = new CountDownLatch(entries.size());
+        Cancellation cancellation = new Cancellation();
+        try {
+            for (Entry entry : entries) {
+                permits.acquire();
+                Optional<Future<?>> analysis = start(entry, emitter, pending, cancellation);
+                synchronized (analyses) {
+                    analysis.ifPresent(analyses::add);
+                }
+            }
+            pending.await();
+            emitter.complete();
+        } catch (InterruptedException e) {
+            cancellation.cancel(Cancellation.Reason.CANCELLED);
+            synchronized (analyses) {
+                analyses.forEach(f -> f.cancel(true));
+            }
+            Thread.currentThread().interrupt();
+        } finally {
+            cancellation.cancel(Cancellation.Reason.COMPLETED);
+            RecordingArchives.delete(entries.stream().map(Entry::recording).toList());
+        }
+    }
+
+    /**
+     * Start analyzing one recording. The permit acquired for it is released, and the latch
+     * counted down, once its result has been emitted.
+     */
+    private Optional<Future<?>> start(
+            Entry entry,
+            MultiEmitter<? super BatchResult> emitter,
+            CountDownLatch pending,
+            Cancellation cancellation)
+            throws InterruptedException {
+        String name = entry.recording().name();
+        Path file = entry.recording().file();
+        long start = System.nanoTime();
+        Completion completion = new Completion(name, start, emitter, pending);
+        try {
+            String digest =
+                    cache.isEnabled() || parsedCache.isEnabled()
+                            ? Digests.sha256(file, Boolean.parseBoolean(mappedIngest))
+                            : null;
+            String cacheKey =
+                    digest != null && cache.isEnabled()
+                            ? ReportCache.key(digest, entry.filter())
+                            : null;
+            if (cacheKey != null) {
+                Optional<String> cached = cache.get(cacheKey);
+                if (cached.isPresent()) {
+                    completion.ok(cached.get());
+                    return Optional.empty();
+                }
+            }
+            boolean compressed = IOToolkit.isCompressedFile(file.toFile());
+            JfrValidator.validate(file, compressed);
+            Compression.Size uncompressed =
+                    compressed
+                            ? Compression.uncompressedSize(file)
+                            : new Compression.Size(Files.size(file), true);
+            long size = uncompressed.bytes();
+            long cost = estimator.estimate(file, compressed, size);
+            boolean degraded = largeRecordings.isOversized(cost);
+            UploadedRecording admitted =
+                    new UploadedRecording(
+                            file,
+                            compressed,
+                            Boolean.parseBoolean(mappedIngest),
+                            size,
+                            start,
+                            0,
+                            admission.reserveWhenAvailable(
+                                    degraded ? largeRecordings.workingSet() : cost),
+                            degraded,
+                            cancellation);
+            if (!uncompressed.exact() && !degraded) {
+                // a recording which outgrows the budget fails alone, not with the whole batch
+                Cancellation own = new Cancellation();
+                cancellation.onCancel(() -> own.cancel(cancellation.reason()));
+                admitted =
+                        admitted.withCancellation(own)
+                                .measured(bytes -> estimator.estimate(bytes, 1));
+            }
+            UploadedRecording recording = admitted;
+            completion.reservation = recording.reservation();
+            Map<String, RuleResult> results = new LinkedHashMap<>();
+            RecordingAnalyzer.Listener listener =
+                    new RecordingAnalyzer.Listener() {
+                        @Override
+                        public void onResult(RuleResult result) {
+                            results.put(result.id(), result.asReportEntry());
+                        }
+
+                        @Override
+                        public void onComplete() {
+                            try {
+                                String report = serializer.mapper().writeValueAsString(results);
+                                if (cacheKey != null) {
+                                    cache.put(cacheKey, report);
+                                }
+                                completion.ok(report);
+                            } catch (JsonProcessingException e) {
+                                completion.failed(500, e);
+                            }
+                        }
+
+                        @Override
+                        public void onError(Throwable t) {
+                            boolean overBudget =
+                                    recording.cancellation().reason()
+                                            == Cancellation.Reason.OVER_BUDGET;
+                            completion.failed(overBudget ? 413 : 500, t);
+                        }
+                    };
+            return Optional.of(submit(recording, digest, entry.filter(), listener));
+        } catch (InterruptedException e) {
+            completion.release();
+            throw e;
+        } catch (WebApplicationException e) {
+            completion.failed(e.getResponse().getStatus(), e);
+        } catch (IOException | RuntimeException e) {
+            completion.failed(500, e);
+        }
+        return Optional.empty();
+    }
+
+    private Future<?> submit(
+            UploadedRecording recording,
+            String digest,
+            String filter,
+            RecordingAnalyzer.Listener listener)
+            throws InterruptedException {
+        int attempts = 0;
+        while (true) {
+            try {
+                return analyzer.analyze(
+                        recording, digest, ParseFilter.NONE, rfp.parse(filter), listener);
+            } catch (RejectedExecutionException e) {
+                if (++attempts > Integer.parseInt(maxResubmits)) {
+                    throw new ServiceUnavailableException(Long.parseLong(retryAfterSeconds));
+                }
+                // interactive requests take precedence, so wait for the executor to drain
+                TimeUnit.MILLISECONDS.sleep(RESUBMIT_DELAY_MS);
+            }
+        }
+    }
+
+    private class Completion {
+        private final String name;
+        private final long start;
+        private final MultiEmitter<? super BatchResult> emitter;
+        private final CountDownLatch pending;
+        private volatile AdmissionController.Reservation reservation;
+
+        Completion(
+                String name,
+                long start,
+                MultiEmitter<? super BatchResult> emitter,
+                CountDownLatch pending) {
+            this.name = name;
+            this.start = start;
+            this.emitter = emitter;
+            this.pending = pending;
+        }
+
+        void ok(String report) {
+            finish(BatchResult.ok(name, report, elapsedMs()));
+        }
+
+        void failed(int status, Throwable t) {
+            logger.warnf(t, "Batch analysis of %s failed", name);
+            finish(BatchResult.failed(name, status, t.getMessage(), elapsedMs()));
+        }
+
+        /** Release the admission reservation and the permit held for the recording. */
+        void release() {
+            if (reservation != null) {
+                reservation.close();
+            }
+            permits.release();
+        }
+
+        private long elapsedMs() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        }
+
+        private void finish(BatchResult result) {
+            release();
+            emitter.emit(result);
+            pending.countDown();
+        }
+    }
+}
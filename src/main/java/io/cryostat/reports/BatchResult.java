@@ -0,0 +1,37 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+/**
+ * The outcome of analyzing one recording of a batch. Successful results carry the report, in the
+ * same form as the response of {@code POST /report}, and failed results carry an error message
+ * and the status code the failure would have produced for a single recording.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchResult(
+        String name, int status, @JsonRawValue String report, String error, long elapsedMs) {
+
+    static BatchResult ok(String name, String report, long elapsedMs) {
+        return new BatchResult(name, 200, report, null, elapsedMs);
+    }
+
+    static BatchResult failed(String name, int status, String error, long elapsedMs) {
+        return new BatchResult(name, status, null, error, elapsedMs);
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import jakarta.ws.rs.ClientErrorException;
+import jakarta.ws.rs.ServerErrorException;
+import jakarta.ws.rs.core.Response;
+
+/**
+ * A signal that the work done for a request is no longer wanted, because the client went away,
+ * the deadline passed, the request completed or the job was cancelled. Every stage of a request
+ * observes the same signal: streams read through {@link #guard(InputStream)} fail on their next
+ * read, threads blocked in an {@link #interruptible()} section are interrupted, and callbacks such
+ * as cancelling the analysis future are run once.
+ */
+public class Cancellation {
+
+    public enum Reason {
+        DISCONNECTED,
+        DEADLINE,
+        COMPLETED,
+        CANCELLED,
+        /** The recording turned out to need more heap than could be reserved for it. */
+        OVER_BUDGET
+    }
+
+    private volatile Reason reason;
+    private final List<Runnable> callbacks = new ArrayList<>();
+
+    /**
+     * Cancel, if not already cancelled, and run the registered callbacks.
+     *
+     * @return whether this call cancelled
+     */
+    public boolean cancel(Reason reason) {
+        List<Runnable> pending;
+        synchronized (this) {
+            if (this.reason != null) {
+                return false;
+            }
+            this.reason = reason;
+            pending = List.copyOf(callbacks);
+            callbacks.clear();
+        }
+        pending.forEach(Runnable::run);
+        return true;
+    }
+
+    public boolean isCancelled() {
+        return reason != null;
+    }
+
+    public Reason reason() {
+        return reason;
+    }
+
+    /** Whether the work is no longer wanted, rather than cancelled because it could not go on. */
+    public boolean isAbandoned() {
+        Reason r = reason;
+        return r != null && r != Reason.OVER_BUDGET;
+    }
+
+    /** Run the callback on cancellation, or right away if this has already been cancelled. */
+    public void onCancel(Runnable callback) {
+        synchronized (this) {
+            if (reason == null) {
+                callbacks.add(callback);
+                return;
+            }
+        }
+        callback.run();
+    }
+
+    /**
+     * @throws ServerErrorException with status 504 if the deadline passed
+     * @throws ClientErrorException with status 413 if the recording outgrew the admission budget
+     * @throws CancellationException if cancelled for any other reason
+     */
+    public void throwIfCancelled() {
+        Reason r = reason;
+        if (r == Reason.DEADLINE) {
+            throw new ServerErrorException(Response.Status.GATEWAY_TIMEOUT);
+        }
+        if (r == Reason.OVER_BUDGET) {
+            throw new ClientErrorException(Response.Status.REQUEST_ENTITY_TOO_LARGE);
+        }
+        if (r != null) {
+            throw new CancellationException(r.toString());
+        }
+    }
+
+    /** Wrap a stream so that reads from it fail once this has been cancelled. */
+    public InputStream guard(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                check();
+                return super.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                check();
+                return super.read(b, off, len);
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                check();
+                return super.skip(n);
+            }
+
+            private void check() throws InterruptedIOException {
+                Reason r = reason;
+                if (r != null) {
+                    throw new InterruptedIOException("Cancelled: " + r);
+                }
+            }
+        };
+    }
+
+    /**
+     * Mark a section in which the current thread is interrupted if this is cancelled, for waits
+     * which do not read from a guarded stream. Closing the section clears any such interrupt.
+     */
+    public Interruptible interruptible() {
+        Interruptible section = new Interruptible(Thread.currentThread());
+        onCancel(section::interrupt);
+        return section;
+    }
+
+    public static class Interruptible implements AutoCloseable {
+        private final Thread thread;
+        private boolean closed;
+        private boolean interrupted;
+
+        private Interruptible(Thread thread) {
+            this.thread = thread;
+        }
+
+        private synchronized void interrupt() {
+            if (!closed) {
+                interrupted = true;
+                thread.interrupt();
+            }
+        }
+
+        @Override
+        public synchronized void close() {
+            closed = true;
+            if (interrupted) {
+                Thread.interrupted();
+            }
+        }
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.common.item.ItemCollectionToolkit;
+import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
+import org.openjdk.jmc.flightrecorder.JfrLoaderToolkit;
+import org.openjdk.jmc.flightrecorder.parser.IParserExtension;
+
+/**
+ * Parses recordings by splitting them at chunk boundaries, parsing the chunks concurrently and
+ * merging the resulting event collections. Chunks are parsed by the analysis thread parsing the
+ * recording, helped by idle threads of the shared {@link AnalysisExecutor}, so that parsing never
+ * takes more threads than the analysis budget. Recordings which are still compressed on disk, or
+ * which have a single chunk, are parsed as one stream.
+ * Events can be filtered out during parsing with a {@link ParseFilter}. Recordings too large to
+ * parse at once can instead be surveyed with a census of their events.
+ */
+@ApplicationScoped
+public class ChunkedRecordingParser {
+
+    @ConfigProperty(name = "io.cryostat.reports.parse.chunk-parallelism", defaultValue = "0")
+    String chunkParallelism;
+
+    @Inject AnalysisExecutor executor;
+
+    private final Logger logger = Logger.getLogger(ChunkedRecordingParser.class);
+
+    /**
+     * Whether the recording would be parsed as several chunks concurrently, rather than as a single
+     * stream.
+     */
+    public boolean isSplit(UploadedRecording recording) throws IOException {
+        return !recording.compressed()
+                && parallelism() > 1
+                && JfrChunks.split(recording.file()).size() > 1;
+    }
+
+    public IItemCollection parse(UploadedRecording recording)
+            throws IOException, CouldNotLoadRecordingException, InterruptedException {
+        return parse(recording, ParseFilter.NONE);
+    }
+
+    /**
+     * Parse a recording, dropping the events rejected by the filter as they are read. Chunks which
+     * lie entirely outside of the filter's time window are not parsed at all.
+     */
+    public IItemCollection parse(UploadedRecording recording, ParseFilter filter)
+            throws IOException, CouldNotLoadRecordingException, InterruptedException {
+        List<JfrChunks.Chunk> chunks = chunks(recording, filter);
+        ParseFilter.Window window = filter.window(chunks);
+        List<IParserExtension> extensions =
+                filter.isEmpty()
+                        ? List.of()
+                        : List.of(
+                                new ParseFilterExtension(
+                                        filter, window, recording.cancellation()));
+        if (recording.compressed() || chunks.isEmpty()) {
+            return load(recording, extensions);
+        }
+        List<JfrChunks.Chunk> selected =
+                chunks.stream()
+                        .filter(c -> c.overlaps(window.fromNanos(), window.toNanos()))
+                        .toList();
+        if (selected.size() == chunks.size() && (parallelism() < 2 || chunks.size() < 2)) {
+            return load(recording, extensions);
+        }
+        logger.debugf(
+                "Parsing %d of %d chunks of %s", selected.size(), chunks.size(), recording.file());
+        return ItemCollectionToolkit.merge(parseChunks(recording, selected, extensions)::stream);
+    }
+
+    /**
+     * Parse the given chunks of an uncompressed recording individually, concurrently if possible.
+     *
+     * @return the events of each chunk, in the order of the chunks
+     */
+    public List<IItemCollection> parseChunks(
+            UploadedRecording recording, List<JfrChunks.Chunk> chunks)
+            throws IOException, CouldNotLoadRecordingException, InterruptedException {
+        return parseChunks(recording, chunks, List.of());
+    }
+
+    private List<IItemCollection> parseChunks(
+            UploadedRecording recording,
+            List<JfrChunks.Chunk> chunks,
+            List<IParserExtension> extensions)
+            throws IOException, CouldNotLoadRecordingException, InterruptedException {
+        int parallelism = parallelism();
+        if (parallelism < 2 || chunks.size() < 2) {
+            List<IItemCollection> collections = new ArrayList<>(chunks.size());
+            for (JfrChunks.Chunk chunk : chunks) {
+                collections.add(parseChunk(recording, chunk, extensions));
+            }
+            return collections;
+        }
+        List<Callable<IItemCollection>> tasks = new ArrayList<>(chunks.size());
+        for (JfrChunks.Chunk chunk : chunks) {
+            tasks.add(() -> parseChunk(recording, chunk, extensions));
+        }
+        try {
+            return executor.fork(tasks, parallelism);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CouldNotLoadRecordingException) {
+                throw (CouldNotLoadRecordingException) cause;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Count the events of each type accepted by the filter, weighted by their number of fields,
+     * without retaining any of them.
+     *
+     * @see EventCensus
+     */
+    public Map<String, Long> census(UploadedRecording recording, ParseFilter filter)
+            throws IOException, CouldNotLoadRecordingException {
+        EventCensus census =
+                new EventCensus(
+                        new ParseFilterExtension(
+                                filter,
+                                filter.window(chunks(recording, filter)),
+                                recording.cancellation()));
+        JfrLoaderToolkit.loadEvents(List.of(recording.file().toFile()), List.of(census));
+        return census.weights();
+    }
+
+    private List<JfrChunks.Chunk> chunks(UploadedRecording recording, ParseFilter filter)
+            throws IOException {
+        if (!recording.compressed()) {
+            return JfrChunks.split(recording.file());
+        }
+        if (filter.last() == null) {
+            return List.of();
+        }
+        // the end of the recording is needed to resolve the window, at the cost of a pass over it
+        try (InputStream stream = recording.openStream()) {
+            return JfrChunks.read(stream);
+        }
+    }
+
+    private static IItemCollection load(
+            UploadedRecording recording, List<IParserExtension> extensions)
+            throws IOException, CouldNotLoadRecordingException {
+        if (!extensions.isEmpty()) {
+            // parser extensions can only be applied when loading from files
+            return JfrLoaderToolkit.loadEvents(List.of(recording.file().toFile()), extensions);
+        }
+        try (InputStream stream = recording.openStream()) {
+            return JfrLoaderToolkit.loadEvents(stream);
+        }
+    }
+
+    private static IItemCollection parseChunk(
+            UploadedRecording recording,
+            JfrChunks.Chunk chunk,
+            List<IParserExtension> extensions)
+            throws IOException, CouldNotLoadRecordingException {
+        recording.cancellation().throwIfCancelled();
+        try (InputStream stream =
+                recording
+                        .cancellation()
+                        .guard(
+                                new MappedFileInputStream(
+                                        recording.file(), chunk.offset(), chunk.size()))) {
+            if (extensions.isEmpty()) {
+                return JfrLoaderToolkit.loadEvents(stream);
+            }
+            // parser extensions are only accepted alongside files, so apply the filter through
+            // the registered extension rather than copying the chunk out to a file of its own
+            return ScopedParserExtension.with(
+                    extensions, () -> JfrLoaderToolkit.loadEvents(stream));
+        } catch (IOException | CouldNotLoadRecordingException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    private int parallelism() {
+        int configured = Integer.parseInt(chunkParallelism);
+        return configured > 0 ? configured : Runtime.getRuntime().availableProcessors();
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public final class Compression {
+
+    private static final long GZIP_ISIZE_MODULUS = 1L << 32;
+    // GZIP'd JFR rarely compresses better than this, so below this input size the 32-bit ISIZE
+    // field cannot have wrapped around
+    private static final long MAX_COMPRESSION_RATIO = 32;
+
+    private Compression() {}
+
+    /**
+     * The decompressed size of a compressed recording, as far as it can be told without
+     * decompressing it.
+     *
+     * @param bytes the decompressed size in bytes, or a lower bound of it if the size is not exact
+     */
+    public record Size(long bytes, boolean exact) {}
+
+    /**
+     * Determine the decompressed size of a compressed recording without decompressing it. For
+     * GZIP files this is read from the ISIZE field of the trailer, which holds the uncompressed
+     * length modulo 2^32, and is exact as long as the file is small enough that the field cannot
+     * have wrapped. For larger GZIP files it is the smallest length the field allows that is at
+     * least the length of the file, and for other compression formats it is the length of the
+     * file. Inexact sizes are checked by counting the bytes as the recording is decompressed for
+     * parsing.
+     */
+    public static Size uncompressedSize(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < 18 || !isGzip(channel)) {
+                return new Size(length, false);
+            }
+            ByteBuffer trailer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(trailer, length - 4);
+            trailer.flip();
+            long isize = Integer.toUnsignedLong(trailer.getInt());
+            if (length * MAX_COMPRESSION_RATIO < GZIP_ISIZE_MODULUS) {
+                return new Size(isize, true);
+            }
+            long wraps = Math.max(0, length - isize + GZIP_ISIZE_MODULUS - 1) / GZIP_ISIZE_MODULUS;
+            return new Size(isize + wraps * GZIP_ISIZE_MODULUS, false);
+        }
+    }
+
+    public static boolean isGzip(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.size() >= 2 && isGzip(channel);
+        }
+    }
+
+    private static boolean isGzip(FileChannel channel) throws IOException {
+        ByteBuffer magic = ByteBuffer.allocate(2);
+        channel.read(magic, 0);
+        return magic.get(0) == (byte) 0x1f && magic.get(1) == (byte) 0x8b;
+    }
+}
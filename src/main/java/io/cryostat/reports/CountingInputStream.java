@@ -0,0 +1,95 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.LongConsumer;
+
+/**
+ * Reports the running total of bytes read from the wrapped stream to a listener, and optionally
+ * notifies another listener once the end of the stream has been reached.
+ */
+public class CountingInputStream extends FilterInputStream {
+
+    private final LongConsumer listener;
+    private final Runnable onEof;
+    private long count;
+    private boolean eof;
+
+    public CountingInputStream(InputStream in, LongConsumer listener) {
+        this(in, listener, () -> {});
+    }
+
+    public CountingInputStream(InputStream in, LongConsumer listener, Runnable onEof) {
+        super(in);
+        this.listener = listener;
+        this.onEof = onEof;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            advance(1);
+        } else {
+            reachedEof();
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            advance(n);
+        } else if (n < 0) {
+            reachedEof();
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        if (skipped > 0) {
+            advance(skipped);
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void reachedEof() {
+        if (!eof) {
+            eof = true;
+            onEof.run();
+        }
+    }
+
+    private void advance(long n) {
+        count += n;
+        listener.accept(count);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmc.flightrecorder.parser.IEventSink;
+import org.openjdk.jmc.flightrecorder.parser.IEventSinkFactory;
+import org.openjdk.jmc.flightrecorder.parser.IParserExtension;
+import org.openjdk.jmc.flightrecorder.parser.ValueField;
+
+/**
+ * Tallies the events of each type in a recording while it is being parsed, and drops every event
+ * rather than storing it, so that a census of a recording only needs the heap for one chunk's
+ * metadata and constant pools at a time. Each event is weighted by its number of fields, as a
+ * proxy for its share of the heap that a full parse would need. Events rejected by the given
+ * {@link ParseFilterExtension} are not counted.
+ */
+public class EventCensus implements IParserExtension {
+
+    private final ParseFilterExtension filter;
+    private final Map<String, LongAdder> weights = new ConcurrentHashMap<>();
+
+    public EventCensus(ParseFilterExtension filter) {
+        this.filter = filter;
+    }
+
+    @Override
+    public IEventSinkFactory getEventSinkFactory(IEventSinkFactory subFactory) {
+        return filter.getEventSinkFactory(counting(subFactory));
+    }
+
+    private IEventSinkFactory counting(IEventSinkFactory subFactory) {
+        return new IEventSinkFactory() {
+            @Override
+            public IEventSink create(
+                    String identifier,
+                    String label,
+                    String[] category,
+                    String description,
+                    List<ValueField> dataStructure) {
+                LongAdder weight = weights.computeIfAbsent(identifier, k -> new LongAdder());
+                int fields = Math.max(1, dataStructure.size());
+                return values -> weight.add(fields);
+            }
+
+            @Override
+            public void flush() {
+                subFactory.flush();
+            }
+        };
+    }
+
+    public String getValueInterpretation(String eventTypeId, String fieldId) {
+        return null;
+    }
+
+    /** The weight of the events counted so far, by event type. */
+    public Map<String, Long> weights() {
+        return weights.entrySet().stream()
+                .collect(Collectors.toUnmodifiableMap(Map.Entry::getKey, e -> e.getValue().sum()));
+    }
+}
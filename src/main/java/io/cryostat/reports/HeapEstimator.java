@@ -0,0 +1,189 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.function.IntSupplier;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+/**
+ * Predicts the peak heap needed to parse and analyze a recording. A prediction is made up of a
+ * per-byte factor applied to the decompressed size of the recording, and a fixed overhead per
+ * chunk, counted by a pre-scan of the chunk headers, for each chunk's metadata and constant
+ * pools. The per-byte factor starts out as the configured memory factor, and once enough parses
+ * have been observed it is replaced by a moving average of the measured heap growth per byte,
+ * multiplied by a safety margin. Heap growth is measured as a difference in used heap, which a
+ * collection during the parse makes too small, so parses overlapped by a collection are not
+ * observed, and the learned factor never drops below a configured fraction of the memory factor.
+ */
+@ApplicationScoped
+public class HeapEstimator {
+
+    private static final double WEIGHT = 0.2;
+
+    @ConfigProperty(name = "io.cryostat.reports.memory-factor", defaultValue = "10")
+    String memoryFactor;
+
+    @ConfigProperty(name = "io.cryostat.reports.estimator.enabled", defaultValue = "true")
+    String enabled;
+
+    @ConfigProperty(name = "io.cryostat.reports.estimator.min-samples", defaultValue = "5")
+    String minSamples;
+
+    @ConfigProperty(name = "io.cryostat.reports.estimator.margin", defaultValue = "1.5")
+    String margin;
+
+    @ConfigProperty(name = "io.cryostat.reports.estimator.chunk-overhead", defaultValue = "1048576")
+    String chunkOverhead;
+
+    @ConfigProperty(name = "io.cryostat.reports.estimator.floor", defaultValue = "0.5")
+    String floor;
+
+    private final Logger logger = Logger.getLogger(HeapEstimator.class);
+
+    private long samples;
+    private double observedFactor;
+
+    /**
+     * @param size the decompressed size of the recording in bytes
+     */
+    public long estimate(Path file, boolean compressed, long size) {
+        return estimate(size, compressed ? 1 : countChunks(file));
+    }
+
+    public long estimate(long size, int chunks) {
+        if (!isCalibrated()) {
+            return size * Long.parseLong(memoryFactor);
+        }
+        return (long) (size * factor()) + chunks * Long.parseLong(chunkOverhead);
+    }
+
+    /**
+     * Refine the estimate with the heap growth measured across parsing a recording. Only parses
+     * which were not overlapped by other analyses should be reported, so that the growth can be
+     * attributed to the recording.
+     */
+    public void observe(UploadedRecording recording, long heapBytes) {
+        observe(
+                recording.size(),
+                recording.compressed() ? 1 : countChunks(recording.file()),
+                heapBytes);
+    }
+
+    /**
+     * @param size the decompressed size of the parsed recording in bytes
+     * @param chunks the number of chunks in the recording
+     * @param heapBytes the heap growth measured across the parse
+     */
+    public void observe(long size, int chunks, long heapBytes) {
+        if (heapBytes <= 0 || size <= 0) {
+            return;
+        }
+        long attributable = Math.max(0, heapBytes - chunks * Long.parseLong(chunkOverhead));
+        double ratio = Math.max(1, (double) attributable / size);
+        synchronized (this) {
+            observedFactor = samples == 0 ? ratio : WEIGHT * ratio + (1 - WEIGHT) * observedFactor;
+            samples++;
+        }
+        logger.debugf(
+                "Parsing %d bytes in %d chunks grew the heap by %d bytes (%.1fx)",
+                size, chunks, heapBytes, ratio);
+    }
+
+    /**
+     * Start measuring the heap growth across an analysis of the recording, for {@link
+     * Measurement#finish()} to observe.
+     *
+     * @param activeAnalyses the number of analyses running, including this one
+     */
+    public Measurement measure(UploadedRecording recording, IntSupplier activeAnalyses) {
+        return new Measurement(recording, activeAnalyses);
+    }
+
+    /**
+     * The heap growth across one analysis. It is only observed if no other analysis overlapped its
+     * start or its finish, and no collection which would hide part of the growth ran in between.
+     */
+    public class Measurement {
+        private final UploadedRecording recording;
+        private final IntSupplier activeAnalyses;
+        private final boolean alone;
+        private final long collections;
+        private final long heapBefore;
+
+        private Measurement(UploadedRecording recording, IntSupplier activeAnalyses) {
+            this.recording = recording;
+            this.activeAnalyses = activeAnalyses;
+            this.alone = activeAnalyses.getAsInt() <= 1;
+            this.collections = collections();
+            this.heapBefore = heapUsed();
+        }
+
+        public void finish() {
+            long heapAfter = heapUsed();
+            if (alone && activeAnalyses.getAsInt() <= 1 && collections() == collections) {
+                observe(recording, heapAfter - heapBefore);
+            }
+        }
+    }
+
+    /** The number of collections so far, to tell whether one overlapped a measurement. */
+    public static long collections() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    public synchronized EstimatorStats stats() {
+        return new EstimatorStats(
+                isCalibrated(), samples, factor(), Double.parseDouble(memoryFactor));
+    }
+
+    public record EstimatorStats(
+            boolean calibrated, long samples, double factor, double configuredFactor) {}
+
+    private synchronized boolean isCalibrated() {
+        return Boolean.parseBoolean(enabled) && samples >= Long.parseLong(minSamples);
+    }
+
+    private synchronized double factor() {
+        if (!isCalibrated()) {
+            return Double.parseDouble(memoryFactor);
+        }
+        double minimum = Double.parseDouble(memoryFactor) * Double.parseDouble(floor);
+        return Math.max(minimum, observedFactor * Double.parseDouble(margin));
+    }
+
+    private static long heapUsed() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static int countChunks(Path file) {
+        try {
+            return Math.max(1, JfrChunks.split(file).size());
+        } catch (IOException e) {
+            return 1;
+        }
+    }
+}
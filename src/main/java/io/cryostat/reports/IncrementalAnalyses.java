@@ -0,0 +1,283 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.common.item.ItemCollectionToolkit;
+import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
+
+/**
+ * Keeps the parsed chunks of continuous recordings which are uploaded repeatedly as they grow,
+ * keyed by a client-supplied recording id. JFR chunks are immutable once written, so a chunk
+ * which was parsed for an earlier upload of the same recording is reused rather than parsed
+ * again, and only the chunks appended since then are parsed. Chunks which have since been dropped
+ * from the front of the recording are released. Retained chunks are charged their estimated heap
+ * cost as a reservation with the {@link AdmissionController}, are released when their recording
+ * has not been uploaded for the configured idle time or when more than the configured number of
+ * recordings are tracked, and can be reclaimed by the admission controller for incoming reports.
+ * While an upload is being parsed its recording's chunks are checked out, so that they are not
+ * released while in use.
+ */
+@ApplicationScoped
+public class IncrementalAnalyses {
+
+    @ConfigProperty(name = "io.cryostat.reports.incremental.enabled", defaultValue = "true")
+    String enabled;
+
+    @ConfigProperty(name = "io.cryostat.reports.incremental.max-recordings", defaultValue = "16")
+    String maxRecordings;
+
+    @ConfigProperty(name = "io.cryostat.reports.incremental.idle-timeout", defaultValue = "600000")
+    String idleTimeoutMs;
+
+    @Inject AdmissionController admission;
+    @Inject ChunkedRecordingParser parser;
+    @Inject HeapEstimator estimator;
+
+    private final Logger logger = Logger.getLogger(IncrementalAnalyses.class);
+
+    private final Map<String, State> states = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong parsed = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private ScheduledExecutorService reaper;
+
+    void onStart(@Observes StartupEvent ev) {
+        reaper =
+                Executors.newSingleThreadScheduledExecutor(
+                        r -> {
+                            Thread t = new Thread(r, "incremental-reaper");
+                            t.setDaemon(true);
+                            return t;
+                        });
+        long period = Math.max(1000, Long.parseLong(idleTimeoutMs) / 10);
+        reaper.scheduleAtFixedRate(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    void onStop(@Observes ShutdownEvent ev) {
+        reaper.shutdownNow();
+        reclaim(Long.MAX_VALUE);
+    }
+
+    public boolean isEnabled() {
+        return Boolean.parseBoolean(enabled) && Long.parseLong(maxRecordings) > 0;
+    }
+
+    /**
+     * Whether a recording can be parsed incrementally. Only recordings which are uncompressed on
+     * disk can be split into chunks, and a parse filter would make the retained chunks specific
+     * to that filter.
+     */
+    public boolean accepts(UploadedRecording recording, ParseFilter filter) {
+        return isEnabled() && !recording.compressed() && !recording.degraded() && filter.isEmpty();
+    }
+
+    /**
+     * Parse the latest upload of a continuous recording, reusing the chunks retained from earlier
+     * uploads with the same id and retaining the newly parsed ones.
+     *
+     * @return the events of the whole recording
+     */
+    public IItemCollection parse(String recordingId, UploadedRecording recording)
+            throws IOException, CouldNotLoadRecordingException, InterruptedException {
+        List<JfrChunks.Chunk> chunks = JfrChunks.split(recording.file());
+        if (chunks.isEmpty()) {
+            return parser.parse(recording);
+        }
+        Map<Key, Retained> previous;
+        synchronized (this) {
+            // take the retained chunks out while they are reused, so that they cannot be
+            // reclaimed or evicted from under this parse
+            State state = states.remove(recordingId);
+            previous = state == null ? Map.of() : state.chunks;
+        }
+        Map<Key, Retained> current = new HashMap<>();
+        List<JfrChunks.Chunk> appended = new ArrayList<>();
+        for (JfrChunks.Chunk chunk : chunks) {
+            Key key = Key.of(chunk);
+            Retained retained = previous.get(key);
+            if (retained != null) {
+                current.put(key, retained);
+            } else if (appended.stream().noneMatch(c -> Key.of(c).equals(key))) {
+                appended.add(chunk);
+            }
+        }
+        List<IItemCollection> collections;
+        try {
+            collections = parser.parseChunks(recording, appended);
+        } catch (IOException
+                | CouldNotLoadRecordingException
+                | InterruptedException
+                | RuntimeException e) {
+            retain(recordingId, previous);
+            throw e;
+        }
+        // chunks which have been dropped from the front of the recording since the last upload
+        previous.values().stream()
+                .filter(r -> !current.containsValue(r))
+                .forEach(Retained::release);
+        for (int i = 0; i < appended.size(); i++) {
+            JfrChunks.Chunk chunk = appended.get(i);
+            current.put(
+                    Key.of(chunk),
+                    new Retained(
+                            collections.get(i),
+                            admission.tryReserve(estimator.estimate(chunk.size(), 1))));
+        }
+        reused.addAndGet(chunks.size() - appended.size());
+        parsed.addAndGet(appended.size());
+        logger.debugf(
+                "Parsed %d of %d chunks of recording %s",
+                appended.size(), chunks.size(), recordingId);
+
+        List<IItemCollection> ordered = new ArrayList<>(chunks.size());
+        chunks.forEach(chunk -> ordered.add(current.get(Key.of(chunk)).items));
+        retain(recordingId, current);
+        return ItemCollectionToolkit.merge(ordered::stream);
+    }
+
+    /**
+     * Replace the retained chunks of a recording. Chunks whose heap could not be reserved are
+     * not retained, and will be parsed again by the next upload.
+     */
+    private void retain(String recordingId, Map<Key, Retained> chunks) {
+        Map<Key, Retained> kept = new HashMap<>();
+        List<Retained> released = new ArrayList<>();
+        chunks.forEach(
+                (key, retained) -> {
+                    if (retained.reservation.isPresent()) {
+                        kept.put(key, retained);
+                    }
+                });
+        synchronized (this) {
+            State replaced = states.put(recordingId, new State(kept, System.nanoTime()));
+            if (replaced != null) {
+                // chunks of a concurrent upload that were not reused by this one
+                replaced.chunks.values().stream()
+                        .filter(r -> !kept.containsValue(r))
+                        .forEach(released::add);
+            }
+            Iterator<State> it = states.values().iterator();
+            while (states.size() > Integer.parseInt(maxRecordings) && it.hasNext()) {
+                released.addAll(it.next().chunks.values());
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        }
+        released.forEach(Retained::release);
+    }
+
+    /**
+     * Release the retained chunks of recordings, least recently uploaded first, until at least
+     * the given number of bytes has been released or no chunks are retained.
+     */
+    public void reclaim(long bytes) {
+        List<Retained> released = new ArrayList<>();
+        synchronized (this) {
+            long total = 0;
+            Iterator<State> it = states.values().iterator();
+            while (total < bytes && it.hasNext()) {
+                State state = it.next();
+                released.addAll(state.chunks.values());
+                total += state.bytes();
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        }
+        released.forEach(Retained::release);
+    }
+
+    private void evictIdle() {
+        long idle = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(idleTimeoutMs));
+        long now = System.nanoTime();
+        List<Retained> released = new ArrayList<>();
+        synchronized (this) {
+            Iterator<State> it = states.values().iterator();
+            while (it.hasNext()) {
+                State state = it.next();
+                if (now - state.lastUpload > idle) {
+                    released.addAll(state.chunks.values());
+                    it.remove();
+                    evictions.incrementAndGet();
+                }
+            }
+        }
+        released.forEach(Retained::release);
+    }
+
+    public synchronized IncrementalStats stats() {
+        int chunks = 0;
+        long bytes = 0;
+        for (State state : states.values()) {
+            chunks += state.chunks.size();
+            bytes += state.bytes();
+        }
+        return new IncrementalStats(
+                states.size(), chunks, bytes, reused.get(), parsed.get(), evictions.get());
+    }
+
+    public record IncrementalStats(
+            int recordings,
+            int chunks,
+            long bytes,
+            long reusedChunks,
+            long parsedChunks,
+            long evictions) {}
+
+    /** Identifies a chunk by its header, which does not change once the chunk is complete. */
+    private record Key(long startNanos, long durationNanos, long size) {
+        static Key of(JfrChunks.Chunk chunk) {
+            return new Key(chunk.startNanos(), chunk.durationNanos(), chunk.size());
+        }
+    }
+
+    private record Retained(
+            IItemCollection items, Optional<AdmissionController.Reservation> reservation) {
+        long cost() {
+            return reservation.map(AdmissionController.Reservation::cost).orElse(0L);
+        }
+
+        void release() {
+            reservation.ifPresent(AdmissionController.Reservation::close);
+        }
+    }
+
+    private record State(Map<Key, Retained> chunks, long lastUpload) {
+        long bytes() {
+            return chunks.values().stream().mapToLong(Retained::cost).sum();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Locates the chunks of an uncompressed JFR file. Each chunk is self-contained, with its own
+ * metadata and constant pools, and begins with a header holding the magic bytes {@code FLR\0},
+ * the format version, the size of the chunk and the wall-clock time span it covers. The header
+ * parsing here is shared with {@link JfrValidator}.
+ */
+public class JfrChunks {
+
+    static final int MAGIC = 0x464c5200;
+    static final int HEADER_SIZE = 48;
+    private static final int MAJOR_OFFSET = 4;
+    private static final int MINOR_OFFSET = 6;
+    private static final int SIZE_OFFSET = 8;
+    private static final int CONSTANT_POOL_OFFSET = 16;
+    private static final int METADATA_OFFSET = 24;
+    private static final int START_OFFSET = 32;
+    private static final int DURATION_OFFSET = 40;
+
+    private JfrChunks() {}
+
+    /**
+     * @param startNanos the start of the chunk, in nanoseconds since the epoch
+     */
+    public record Chunk(long offset, long size, long startNanos, long durationNanos) {
+        public long endNanos() {
+            return startNanos + durationNanos;
+        }
+
+        public boolean overlaps(long fromNanos, long toNanos) {
+            return startNanos <= toNanos && endNanos() >= fromNanos;
+        }
+    }
+
+    /**
+     * The fixed fields at the start of a chunk. Version 0 chunks, written by JDK 7 and 8, share the
+     * magic bytes, version and size with later versions, but lay out the rest of the header
+     * differently, so only those fields are meaningful for them.
+     */
+    record Header(
+            int magic,
+            short major,
+            short minor,
+            long size,
+            long constantPoolOffset,
+            long metadataOffset,
+            long startNanos,
+            long durationNanos) {
+
+        /** @param header at least {@link #HEADER_SIZE} bytes from the start of a chunk */
+        static Header parse(ByteBuffer header) {
+            return new Header(
+                    header.getInt(0),
+                    header.getShort(MAJOR_OFFSET),
+                    header.getShort(MINOR_OFFSET),
+                    header.getLong(SIZE_OFFSET),
+                    header.getLong(CONSTANT_POOL_OFFSET),
+                    header.getLong(METADATA_OFFSET),
+                    header.getLong(START_OFFSET),
+                    header.getLong(DURATION_OFFSET));
+        }
+
+        /** Whether the JMC parser supports this version: 0.x, 1.x or 2.x. */
+        boolean isSupported() {
+            return major >= 0 && major <= 2;
+        }
+
+        /** Whether the offsets and time span of the header are laid out as in version 1 on. */
+        boolean isModern() {
+            return major >= 1;
+        }
+    }
+
+    /**
+     * @return the chunks of the file in order, or an empty list if the file is not a well-formed
+     *     sequence of complete chunks, in which case it should be handed to the parser as a whole
+     */
+    public static List<Chunk> split(Path file) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            long offset = 0;
+            while (offset < length) {
+                header.clear();
+                while (header.hasRemaining()) {
+                    if (channel.read(header, offset + header.position()) < 0) {
+                        return List.of();
+                    }
+                }
+                Chunk chunk = chunk(header, offset, length - offset);
+                if (chunk == null) {
+                    return List.of();
+                }
+                chunks.add(chunk);
+                offset += chunk.size();
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * Read the chunk headers of a recording that is only available as a stream, such as one that
+     * is decompressed on the fly, skipping over the chunk bodies.
+     *
+     * @return the chunks of the stream in order, or an empty list if it is not well-formed
+     */
+    public static List<Chunk> read(InputStream stream) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        byte[] header = new byte[HEADER_SIZE];
+        long offset = 0;
+        while (true) {
+            int n = stream.readNBytes(header, 0, HEADER_SIZE);
+            if (n == 0) {
+                return chunks;
+            }
+            if (n < HEADER_SIZE) {
+                return List.of();
+            }
+            Chunk chunk = chunk(ByteBuffer.wrap(header), offset, Long.MAX_VALUE);
+            if (chunk == null) {
+                return List.of();
+            }
+            try {
+                stream.skipNBytes(chunk.size() - HEADER_SIZE);
+            } catch (EOFException e) {
+                return List.of();
+            }
+            chunks.add(chunk);
+            offset += chunk.size();
+        }
+    }
+
+    private static Chunk chunk(ByteBuffer buffer, long offset, long remaining) {
+        Header header = Header.parse(buffer);
+        if (header.magic() != MAGIC
+                || !header.isSupported()
+                || header.size() < HEADER_SIZE
+                || header.size() > remaining) {
+            return null;
+        }
+        if (!header.isModern()) {
+            // the time span of a version 0 chunk is not known here, so it overlaps every window
+            return new Chunk(offset, header.size(), 0, Long.MAX_VALUE);
+        }
+        return new Chunk(offset, header.size(), header.startNanos(), header.durationNanos());
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.ZipException;
+
+import org.openjdk.jmc.common.io.IOToolkit;
+
+/**
+ * Checks the structure of an uploaded recording before any work is spent on it. Only the chunk
+ * headers are read, through {@link JfrChunks.Header}: the magic bytes and format version of each
+ * chunk, that its declared size fits within the file, and, for format versions 1 and 2, that its
+ * constant pool and metadata offsets lie within the chunk. This catches uploads which are not
+ * recordings at all and recordings which were truncated in transit, which would otherwise only fail
+ * once the parser reached the damage.
+ */
+public final class JfrValidator {
+
+    private static final int HEADER_SIZE = JfrChunks.HEADER_SIZE;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private JfrValidator() {}
+
+    /**
+     * @param compressed whether the file is still compressed on disk, in which case only the
+     *     header of the first chunk is checked, as the rest cannot be reached without
+     *     decompressing the whole file
+     * @throws InvalidRecordingException if the file is not a well-formed recording
+     */
+    public static void validate(Path file, boolean compressed) throws IOException {
+        if (!compressed) {
+            validate(file);
+            return;
+        }
+        try (InputStream stream = IOToolkit.openUncompressedStream(file.toFile())) {
+            validateHeader(stream);
+        } catch (ZipException | EOFException e) {
+            throw corrupt(e);
+        }
+    }
+
+    /** Check every chunk header of an uncompressed recording. */
+    public static void validate(Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length == 0) {
+                throw new InvalidRecordingException("The recording is empty");
+            }
+            long offset = 0;
+            for (int index = 0; offset < length; index++) {
+                header.clear();
+                header.limit((int) Math.min(HEADER_SIZE, length - offset));
+                while (header.hasRemaining()) {
+                    if (channel.read(header, offset + header.position()) < 0) {
+                        break;
+                    }
+                }
+                header.flip();
+                offset += check(header, index, offset, length - offset);
+            }
+        }
+    }
+
+    /**
+     * Check every chunk header of an uncompressed recording read as a stream. The chunk bodies are
+     * read rather than skipped, so that a stream this one wraps, such as one computing a digest,
+     * sees every byte of the recording.
+     *
+     * @param length the length of the recording in bytes
+     */
+    public static void validate(InputStream stream, long length) throws IOException {
+        if (length == 0) {
+            throw new InvalidRecordingException("The recording is empty");
+        }
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long offset = 0;
+        for (int index = 0; offset < length; index++) {
+            long left = length - offset;
+            int n = stream.readNBytes(buffer, 0, (int) Math.min(HEADER_SIZE, left));
+            long size = check(ByteBuffer.wrap(buffer, 0, n).slice(), index, offset, left);
+            for (long remaining = size - n; remaining > 0; ) {
+                int read = stream.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    throw new EOFException();
+                }
+                remaining -= read;
+            }
+            offset += size;
+        }
+    }
+
+    /** Check the header of the first chunk of a recording that is only available as a stream. */
+    public static void validateHeader(InputStream stream) throws IOException {
+        byte[] header = new byte[HEADER_SIZE];
+        int n = stream.readNBytes(header, 0, HEADER_SIZE);
+        if (n == 0) {
+            throw new InvalidRecordingException("The recording is empty");
+        }
+        check(ByteBuffer.wrap(header, 0, n).slice(), 0, 0, Long.MAX_VALUE);
+    }
+
+    /** An exception for a compressed upload which failed to decompress. */
+    public static InvalidRecordingException corrupt(IOException e) {
+        return new InvalidRecordingException(
+                String.format(
+                        "The compressed recording is corrupt or truncated: %s", e.getMessage()));
+    }
+
+    /**
+     * @param buffer the bytes at the start of the chunk, which may be fewer than a whole header
+     * @return the size of the chunk
+     */
+    private static long check(ByteBuffer buffer, int index, long offset, long remaining) {
+        if (buffer.limit() >= 4 && buffer.getInt(0) != JfrChunks.MAGIC) {
+            throw new InvalidRecordingException(
+                    index == 0
+                            ? "Not a JFR recording: it does not start with the magic bytes FLR\\0"
+                            : String.format(
+                                    "Chunk %d at offset %d does not start with the magic bytes"
+                                            + " FLR\\0",
+                                    index, offset));
+        }
+        if (buffer.limit() < HEADER_SIZE) {
+            throw new InvalidRecordingException(
+                    String.format(
+                            "Chunk %d at offset %d is truncated: its header needs %d bytes but"
+                                    + " only %d remain",
+                            index, offset, HEADER_SIZE, buffer.limit()));
+        }
+        JfrChunks.Header header = JfrChunks.Header.parse(buffer);
+        if (!header.isSupported()) {
+            throw new InvalidRecordingException(
+                    String.format(
+                            "Chunk %d at offset %d has unsupported format version %d.%d",
+                            index, offset, header.major(), header.minor()));
+        }
+        long size = header.size();
+        if (size < HEADER_SIZE) {
+            throw new InvalidRecordingException(
+                    String.format(
+                            "Chunk %d at offset %d declares an invalid size of %d bytes",
+                            index, offset, size));
+        }
+        if (size > remaining) {
+            throw new InvalidRecordingException(
+                    String.format(
+                            "Chunk %d at offset %d is truncated: it declares %d bytes but only %d"
+                                    + " remain",
+                            index, offset, size, remaining));
+        }
+        if (header.isModern()) {
+            checkOffset("constant pool", header.constantPoolOffset(), size, index, offset);
+            checkOffset("metadata", header.metadataOffset(), size, index, offset);
+            if (header.durationNanos() < 0) {
+                throw new InvalidRecordingException(
+                        String.format(
+                                "Chunk %d at offset %d has a negative duration", index, offset));
+            }
+        }
+        return size;
+    }
+
+    private static void checkOffset(String name, long value, long size, int index, long offset) {
+        if (value < HEADER_SIZE || value >= size) {
+            throw new InvalidRecordingException(
+                    String.format(
+                            "Chunk %d at offset %d has a %s offset of %d, outside of its %d bytes",
+                            index, offset, name, value, size));
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.openjdk.jmc.flightrecorder.rules.IRule;
+
+/**
+ * Plans the analysis of recordings whose estimated heap cost exceeds the whole admission budget.
+ * Rather than being rejected, such a recording is admitted with a fixed working set and its rules
+ * are evaluated over several passes. Each pass parses only the event types needed by a group of
+ * rules, chosen from an {@link EventCensus} of the recording so that the group's share of the
+ * recording's estimated heap cost fits within the working set. A rule whose events alone exceed
+ * the working set is evaluated against the most recent events that fit, and its result is marked
+ * as windowed. The window starts at a chunk boundary where the most recent chunks fit, and
+ * otherwise within the last chunk, in proportion to its duration. A recording whose chunks' time
+ * spans are not known cannot be windowed, and is rejected as over budget rather than parsed
+ * without a bound.
+ */
+@ApplicationScoped
+public class LargeRecordings {
+
+    @ConfigProperty(name = "io.cryostat.reports.large-recording.enabled", defaultValue = "true")
+    String enabled;
+
+    @ConfigProperty(name = "io.cryostat.reports.large-recording.working-set", defaultValue = "0")
+    String workingSet;
+
+    @Inject AdmissionController admission;
+    @Inject HeapEstimator estimator;
+
+    /** Whether a recording of the given estimated heap cost should be analyzed in passes. */
+    public boolean isOversized(long cost) {
+        return Boolean.parseBoolean(enabled) && cost > admission.budget();
+    }
+
+    /** The heap reserved for analysing an oversized recording. */
+    public long workingSet() {
+        long budget = admission.budget();
+        long configured = Long.parseLong(workingSet);
+        return configured > 0 ? Math.min(configured, budget) : budget / 2;
+    }
+
+    /**
+     * @param census the weight of the recording's events by type
+     * @return the passes needed to evaluate the rules, in order
+     */
+    public List<Pass> plan(UploadedRecording recording, List<IRule> rules, Map<String, Long> census)
+            throws IOException {
+        List<JfrChunks.Chunk> chunks =
+                recording.compressed() ? null : JfrChunks.split(recording.file());
+        long total = Math.max(1, census.values().stream().mapToLong(Long::longValue).sum());
+        double bytesPerWeight =
+                (double)
+                                estimator.estimate(
+                                        recording.size(),
+                                        chunks == null ? 1 : Math.max(1, chunks.size()))
+                        / total;
+        long limit = workingSet();
+
+        List<Pass> passes = new ArrayList<>();
+        List<IRule> group = new ArrayList<>();
+        Set<String> types = new HashSet<>();
+        for (IRule rule : rules) {
+            Set<String> required = RuleCatalog.requiredEventTypes(List.of(rule));
+            Set<String> union = new HashSet<>(types);
+            union.addAll(required);
+            if (!group.isEmpty() && cost(union, census, bytesPerWeight) > limit) {
+                passes.add(new Pass(group, types, null));
+                group = new ArrayList<>();
+                types = new HashSet<>();
+                union = required;
+            }
+            group.add(rule);
+            types = new HashSet<>(union);
+            long cost = cost(types, census, bytesPerWeight);
+            if (group.size() == 1 && cost > limit) {
+                if (chunks == null) {
+                    // the chunk headers of a compressed recording are only known after a pass
+                    try (InputStream stream = recording.openStream()) {
+                        chunks = JfrChunks.read(stream);
+                    }
+                }
+                Instant start = windowStart(chunks, (double) limit / cost);
+                if (start == null) {
+                    recording.cancellation().cancel(Cancellation.Reason.OVER_BUDGET);
+                    recording.cancellation().throwIfCancelled();
+                }
+                passes.add(new Pass(group, types, start));
+                group = new ArrayList<>();
+                types = new HashSet<>();
+            }
+        }
+        if (!group.isEmpty()) {
+            passes.add(new Pass(group, types, null));
+        }
+        return passes;
+    }
+
+    private static long cost(Set<String> types, Map<String, Long> census, double bytesPerWeight) {
+        long weight = 0;
+        for (String type : types) {
+            weight += census.getOrDefault(type, 0L);
+        }
+        return (long) (weight * bytesPerWeight);
+    }
+
+    /**
+     * The start of the most recent events making up at most the given fraction of the recording.
+     * That is the start of the most recent chunks which fit, or if even the last chunk does not,
+     * the point in the last chunk from which the rest of its duration fits, taking its events to
+     * be spread evenly over it. Null if the time spans of the chunks are not known.
+     */
+    private static Instant windowStart(List<JfrChunks.Chunk> chunks, double fraction) {
+        if (chunks.isEmpty()
+                || chunks.stream().anyMatch(c -> c.durationNanos() == Long.MAX_VALUE)) {
+            // not well-formed, or version 0 chunks, whose headers do not carry their time span
+            return null;
+        }
+        long total = chunks.stream().mapToLong(JfrChunks.Chunk::size).sum();
+        long allowed = (long) (total * fraction);
+        int first = chunks.size() - 1;
+        JfrChunks.Chunk last = chunks.get(first);
+        if (last.size() > allowed) {
+            long span = (long) (last.durationNanos() * ((double) allowed / last.size()));
+            return Instant.ofEpochSecond(0, last.endNanos() - span);
+        }
+        long included = last.size();
+        while (first > 0 && included + chunks.get(first - 1).size() <= allowed) {
+            first--;
+            included += chunks.get(first).size();
+        }
+        long startNanos = chunks.get(first).startNanos();
+        return Instant.ofEpochSecond(0, startNanos);
+    }
+
+    /**
+     * One parse of an oversized recording, and the rules evaluated against it.
+     *
+     * @param start if not null, only events from this instant on are loaded
+     */
+    public record Pass(List<IRule> rules, Set<String> eventTypes, Instant start) {
+
+        public Pass {
+            rules = List.copyOf(rules);
+            eventTypes = Set.copyOf(eventTypes);
+        }
+
+        public boolean isWindowed() {
+            return start != null;
+        }
+
+        /** Narrow the requested parse filter down to this pass. */
+        public ParseFilter filter(ParseFilter requested) {
+            Set<String> types = new HashSet<>(eventTypes);
+            if (!requested.eventTypes().isEmpty()) {
+                types.retainAll(requested.eventTypes());
+            }
+            if (types.isEmpty()) {
+                // an empty allow-list would load every event type
+                types.addAll(ParseFilter.ALWAYS_LOADED);
+            }
+            Instant from = requested.start();
+            if (start != null && (from == null || start.isAfter(from))) {
+                from = start;
+            }
+            return new ParseFilter(from, requested.end(), requested.last(), Set.copyOf(types));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a file through a read-only memory mapping, so that the parser copies data directly out of
+ * the page cache rather than through an intermediate read buffer. Files larger than a single
+ * mapping allows are mapped one segment at a time. The stream may be limited to a range of the
+ * file.
+ *
+ * <p>There is no supported way to unmap a mapping explicitly: a segment stays mapped until its
+ * buffer is garbage collected, holding address space and, if the file has been deleted, its disk
+ * space. The stream drops its reference to the current segment as soon as it moves past it and on
+ * {@link #close()}, so that segments become collectable as early as possible, but callers should
+ * not hold on to a stream after closing it.
+ */
+public class MappedFileInputStream extends InputStream {
+
+    static final long SEGMENT_SIZE = 1L << 30;
+
+    private final FileChannel channel;
+    private final long end;
+    private MappedByteBuffer segment;
+    private long segmentStart;
+    private long position;
+
+    public MappedFileInputStream(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.end = channel.size();
+    }
+
+    /** Read only the {@code length} bytes of the file starting at {@code offset}. */
+    public MappedFileInputStream(Path file, long offset, long length) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.end = Math.min(channel.size(), offset + length);
+        this.position = offset;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureSegment()) {
+            return -1;
+        }
+        position++;
+        return segment.get() & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureSegment()) {
+            return -1;
+        }
+        int n = Math.min(len, segment.remaining());
+        segment.get(b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = Math.max(0, Math.min(n, end - position));
+        position += skipped;
+        if (segment != null) {
+            long offset = position - segmentStart;
+            if (offset < segment.limit()) {
+                segment.position((int) offset);
+            } else {
+                segment = null;
+            }
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, end - position);
+    }
+
+    @Override
+    public void close() throws IOException {
+        segment = null;
+        position = end;
+        channel.close();
+    }
+
+    private boolean ensureSegment() throws IOException {
+        if (position >= end) {
+            return false;
+        }
+        if (segment == null || !segment.hasRemaining()) {
+            // drop the exhausted segment before mapping the next, so both are never retained
+            segment = null;
+            segmentStart = position;
+            segment =
+                    channel.map(
+                            FileChannel.MapMode.READ_ONLY,
+                            position,
+                            Math.min(SEGMENT_SIZE, end - position));
+        }
+        return true;
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import jakarta.ws.rs.BadRequestException;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Restricts the events loaded from a recording to a wall-clock window and to a set of event types.
+ * The window is given by a start and an end, either of which may be open, and optionally by a
+ * duration counting back from the end of the recording. Event types which rules rely on to
+ * interpret other events are always loaded.
+ */
+public record ParseFilter(Instant start, Instant end, Duration last, Set<String> eventTypes) {
+
+    public static final ParseFilter NONE = new ParseFilter(null, null, null, Set.of());
+
+    static final Set<String> ALWAYS_LOADED =
+            Set.of(
+                    "jdk.ActiveSetting",
+                    "jdk.ActiveRecording",
+                    "jdk.JVMInformation",
+                    "jdk.OSInformation",
+                    "jdk.CPUInformation");
+
+    public record Window(long fromNanos, long toNanos) {
+        public static final Window ALL = new Window(Long.MIN_VALUE, Long.MAX_VALUE);
+
+        public boolean contains(long startNanos, long endNanos) {
+            return startNanos <= toNanos && endNanos >= fromNanos;
+        }
+
+        public boolean isAll() {
+            return fromNanos == Long.MIN_VALUE && toNanos == Long.MAX_VALUE;
+        }
+    }
+
+    public static ParseFilter of(RecordingFormData form) {
+        Instant start = parseInstant("start", form.start);
+        Instant end = parseInstant("end", form.end);
+        if (start != null && end != null && start.isAfter(end)) {
+            throw new BadRequestException("start must not be after end");
+        }
+        Duration last = parseDuration("last", form.last);
+        if (last != null && (last.isNegative() || last.isZero())) {
+            throw new BadRequestException("last must be a positive duration");
+        }
+        Set<String> eventTypes =
+                StringUtils.isBlank(form.eventTypes)
+                        ? Set.of()
+                        : Arrays.stream(form.eventTypes.split(","))
+                                .map(String::trim)
+                                .filter(s -> !s.isEmpty())
+                                .collect(Collectors.toUnmodifiableSet());
+        return new ParseFilter(start, end, last, eventTypes);
+    }
+
+    public boolean isEmpty() {
+        return !hasWindow() && eventTypes.isEmpty();
+    }
+
+    public boolean hasWindow() {
+        return start != null || end != null || last != null;
+    }
+
+    ParseFilter withEventTypes(Set<String> eventTypes) {
+        return new ParseFilter(start, end, last, eventTypes);
+    }
+
+    public boolean accepts(String eventType) {
+        return eventTypes.isEmpty()
+                || eventTypes.contains(eventType)
+                || ALWAYS_LOADED.contains(eventType);
+    }
+
+    /**
+     * Scope a recording digest to this filter, so that caches keep results computed from filtered
+     * and unfiltered parses apart.
+     */
+    public String scope(String digest) {
+        if (digest == null || isEmpty()) {
+            return digest;
+        }
+        return String.format(
+                "%s@%s,%s,%s,%s",
+                digest,
+                start == null ? "" : start.toEpochMilli(),
+                end == null ? "" : end.toEpochMilli(),
+                last == null ? "" : last.toMillis(),
+                String.join("+", new TreeSet<>(eventTypes)));
+    }
+
+    /** Resolve the window against the time span covered by the chunks of the recording. */
+    public Window window(List<JfrChunks.Chunk> chunks) {
+        long from = start == null ? Long.MIN_VALUE : toNanos(start);
+        long to = end == null ? Long.MAX_VALUE : toNanos(end);
+        if (last != null && !chunks.isEmpty()) {
+            long recordingEnd =
+                    chunks.stream().mapToLong(JfrChunks.Chunk::endNanos).max().getAsLong();
+            from = Math.max(from, recordingEnd - last.toNanos());
+        }
+        return new Window(from, to);
+    }
+
+    private static long toNanos(Instant instant) {
+        return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+    }
+
+    private static Instant parseInstant(String field, String value) {
+        if (StringUtils.isBlank(value)) {
+            return null;
+        }
+        try {
+            if (StringUtils.isNumeric(value.trim())) {
+                return Instant.ofEpochMilli(Long.parseLong(value.trim()));
+            }
+            return Instant.parse(value.trim());
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new BadRequestException(
+                    String.format(
+                            "%s must be an ISO-8601 instant or epoch milliseconds: %s",
+                            field, value),
+                    e);
+        }
+    }
+
+    private static Duration parseDuration(String field, String value) {
+        if (StringUtils.isBlank(value)) {
+            return null;
+        }
+        try {
+            if (StringUtils.isNumeric(value.trim())) {
+                return Duration.ofMillis(Long.parseLong(value.trim()));
+            }
+            return Duration.parse(value.trim());
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new BadRequestException(
+                    String.format(
+                            "%s must be an ISO-8601 duration or milliseconds: %s", field, value),
+                    e);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.UnitLookup;
+import org.openjdk.jmc.flightrecorder.parser.IEventSink;
+import org.openjdk.jmc.flightrecorder.parser.IEventSinkFactory;
+import org.openjdk.jmc.flightrecorder.parser.IParserExtension;
+import org.openjdk.jmc.flightrecorder.parser.ValueField;
+
+/**
+ * Drops events while a recording is being parsed, before they are stored in the resulting event
+ * collection: events of types not accepted by the {@link ParseFilter}, and events which lie
+ * entirely outside of its time window. Types which are always loaded are exempt from the window,
+ * as they are typically only emitted at the start and end of each chunk. Parsing is aborted once
+ * the request's {@link Cancellation} is cancelled, as the parser reads the files itself.
+ */
+public class ParseFilterExtension implements IParserExtension {
+
+    private static final String START_TIME = "startTime";
+    private static final String DURATION = "duration";
+    private static final IEventSink DROP = values -> {};
+
+    private final ParseFilter filter;
+    private final ParseFilter.Window window;
+    private final Cancellation cancellation;
+
+    public ParseFilterExtension(
+            ParseFilter filter, ParseFilter.Window window, Cancellation cancellation) {
+        this.filter = filter;
+        this.window = window;
+        this.cancellation = cancellation;
+    }
+
+    @Override
+    public IEventSinkFactory getEventSinkFactory(IEventSinkFactory subFactory) {
+        return new IEventSinkFactory() {
+            @Override
+            public IEventSink create(
+                    String identifier,
+                    String label,
+                    String[] category,
+                    String description,
+                    List<ValueField> dataStructure) {
+                if (!filter.accepts(identifier)) {
+                    return DROP;
+                }
+                IEventSink sink =
+                        subFactory.create(identifier, label, category, description, dataStructure);
+                int startIndex = indexOf(dataStructure, START_TIME);
+                if (window.isAll()
+                        || startIndex < 0
+                        || ParseFilter.ALWAYS_LOADED.contains(identifier)) {
+                    return values -> {
+                        checkCancelled();
+                        sink.addEvent(values);
+                    };
+                }
+                int durationIndex = indexOf(dataStructure, DURATION);
+                return values -> {
+                    checkCancelled();
+                    if (inWindow(values, startIndex, durationIndex)) {
+                        sink.addEvent(values);
+                    }
+                };
+            }
+
+            @Override
+            public void flush() {
+                subFactory.flush();
+            }
+        };
+    }
+
+    public String getValueInterpretation(String eventTypeId, String fieldId) {
+        return null;
+    }
+
+    private void checkCancelled() {
+        if (cancellation.isCancelled()) {
+            throw new CancellationException(cancellation.reason().toString());
+        }
+    }
+
+    private boolean inWindow(Object[] values, int startIndex, int durationIndex) {
+        if (!(values[startIndex] instanceof IQuantity start)) {
+            return true;
+        }
+        long startNanos = start.clampedLongValueIn(UnitLookup.EPOCH_NS);
+        long endNanos = startNanos;
+        if (durationIndex >= 0 && values[durationIndex] instanceof IQuantity duration) {
+            endNanos += duration.clampedLongValueIn(UnitLookup.NANOSECOND);
+        }
+        return window.contains(startNanos, endNanos);
+    }
+
+    private static int indexOf(List<ValueField> dataStructure, String identifier) {
+        for (int i = 0; i < dataStructure.size(); i++) {
+            if (identifier.equals(dataStructure.get(i).getIdentifier())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.openjdk.jmc.common.item.IItemCollection;
+
+/**
+ * Short-lived cache of parsed recordings, so that requests for different rule subsets against the
+ * same recording only pay for parsing once. Entries are keyed by the digest of the uploaded
+ * recording and charged their estimated heap cost, both against this cache's own budget and as a
+ * reservation with the {@link AdmissionController}. Entries are evicted in least-recently-used
+ * order once the budget is exceeded, once they are older than the configured TTL, or when the
+ * admission controller needs their heap for incoming reports.
+ */
+@ApplicationScoped
+public class ParsedRecordingCache {
+
+    @ConfigProperty(name = "io.cryostat.reports.parsed-cache.max-bytes", defaultValue = "268435456")
+    String maxBytes;
+
+    @ConfigProperty(name = "io.cryostat.reports.parsed-cache.ttl", defaultValue = "60000")
+    String ttlMs;
+
+    @Inject AdmissionController admission;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public boolean isEnabled() {
+        return Long.parseLong(maxBytes) > 0;
+    }
+
+    public Optional<IItemCollection> get(String digest) {
+        Entry expired;
+        synchronized (this) {
+            Entry entry = entries.get(digest);
+            if (entry == null) {
+                misses.incrementAndGet();
+                return Optional.empty();
+            }
+            if (!entry.isExpired(System.nanoTime())) {
+                hits.incrementAndGet();
+                return Optional.of(entry.items);
+            }
+            remove(digest, entry);
+            misses.incrementAndGet();
+            expired = entry;
+        }
+        expired.reservation.close();
+        return Optional.empty();
+    }
+
+    /**
+     * Retain a parsed recording, if its estimated heap cost fits within this cache's budget and
+     * can be reserved with the admission controller without waiting.
+     *
+     * @param cost the estimated heap cost of the parsed recording in bytes
+     */
+    public void put(String digest, IItemCollection items, long cost) {
+        long limit = Long.parseLong(maxBytes);
+        if (cost > limit) {
+            return;
+        }
+        Optional<AdmissionController.Reservation> reservation = admission.tryReserve(cost);
+        if (reservation.isEmpty()) {
+            return;
+        }
+        List<Entry> evicted = new ArrayList<>();
+        synchronized (this) {
+            Entry previous = entries.remove(digest);
+            if (previous != null) {
+                currentBytes -= previous.reservation.cost();
+                evicted.add(previous);
+            }
+            long expiry =
+                    System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Long.parseLong(ttlMs));
+            entries.put(digest, new Entry(items, reservation.get(), expiry));
+            currentBytes += reservation.get().cost();
+            evict(limit, 0, evicted);
+        }
+        evicted.forEach(e -> e.reservation.close());
+    }
+
+    /**
+     * Evict entries, least recently used first, until at least the given number of bytes has been
+     * released or the cache is empty.
+     */
+    public void reclaim(long bytes) {
+        List<Entry> evicted = new ArrayList<>();
+        synchronized (this) {
+            evict(Long.parseLong(maxBytes), bytes, evicted);
+        }
+        evicted.forEach(e -> e.reservation.close());
+    }
+
+    /** The digests of the cached recordings, scoped to the parse filter they were parsed with. */
+    public synchronized List<String> digests() {
+        return List.copyOf(entries.keySet());
+    }
+
+    public synchronized CacheStats stats() {
+        return new CacheStats(
+                hits.get(), misses.get(), evictions.get(), entries.size(), currentBytes);
+    }
+
+    private void evict(long limit, long reclaim, List<Entry> evicted) {
+        long now = System.nanoTime();
+        long released = 0;
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next().getValue();
+            if (currentBytes <= limit && released >= reclaim && !entry.isExpired(now)) {
+                continue;
+            }
+            it.remove();
+            currentBytes -= entry.reservation.cost();
+            released += entry.reservation.cost();
+            evictions.incrementAndGet();
+            evicted.add(entry);
+        }
+    }
+
+    private void remove(String digest, Entry entry) {
+        entries.remove(digest);
+        currentBytes -= entry.reservation.cost();
+        evictions.incrementAndGet();
+    }
+
+    private static class Entry {
+        final IItemCollection items;
+        final AdmissionController.Reservation reservation;
+        final long expiry;
+
+        Entry(IItemCollection items, AdmissionController.Reservation reservation, long expiry) {
+            this.items = items;
+            this.reservation = reservation;
+            this.expiry = expiry;
+        }
+
+        boolean isExpired(long now) {
+            return now - expiry > 0;
+        }
+    }
+
+    public record CacheStats(long hits, long misses, long evictions, int entries, long bytes) {}
+}
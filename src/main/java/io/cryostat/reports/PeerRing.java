@@ -0,0 +1,106 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+/**
+ * Assigns recordings to the replicas of this service on a consistent-hash ring, so that repeated
+ * requests for the same recording can be routed to the replica which already has its results and
+ * its parsed events cached. Each replica is placed on the ring at several points, derived from its
+ * URL, and a recording is owned by the first replica at or after the point given by the leading
+ * bytes of its SHA-256 digest. Adding or removing a replica only moves the recordings adjacent to
+ * its points. Every replica must be configured with the same list of peers.
+ */
+@ApplicationScoped
+public class PeerRing {
+
+    public static final String OWNER_HEADER = "X-Report-Owner";
+
+    private static final int POINTS_PER_PEER = 64;
+
+    @ConfigProperty(name = "io.cryostat.reports.peers", defaultValue = " ")
+    String peers;
+
+    @ConfigProperty(name = "io.cryostat.reports.peers.self", defaultValue = " ")
+    String self;
+
+    private final Logger logger = Logger.getLogger(PeerRing.class);
+    private final NavigableMap<Long, String> ring = new TreeMap<>();
+
+    @PostConstruct
+    void init() {
+        List<String> urls =
+                Arrays.stream(peers.split(","))
+                        .map(String::strip)
+                        .filter(url -> !url.isEmpty())
+                        .distinct()
+                        .toList();
+        for (String url : urls) {
+            for (int i = 0; i < POINTS_PER_PEER; i++) {
+                ring.put(point(url + "#" + i), url);
+            }
+        }
+        if (!urls.isEmpty()) {
+            logger.infof("Consistent-hash ring of %d peers, self: %s", urls.size(), self());
+        }
+    }
+
+    public boolean isEnabled() {
+        return !ring.isEmpty();
+    }
+
+    /** This replica's URL as it appears in the list of peers, or null if it is not configured. */
+    public String self() {
+        return self.isBlank() ? null : self.strip();
+    }
+
+    /**
+     * @param digest the hex SHA-256 digest of a recording
+     * @return the URL of the peer that owns the recording, or null if no peers are configured
+     */
+    public String owner(String digest) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+        long point = Long.parseUnsignedLong(digest, 0, 16, 16);
+        // past the last point, the ring wraps around to the first
+        Map.Entry<Long, String> entry = ring.ceilingEntry(point);
+        return (entry != null ? entry : ring.firstEntry()).getValue();
+    }
+
+    public boolean isOwner(String digest) {
+        String owner = owner(digest);
+        return owner == null || owner.equals(self());
+    }
+
+    private static long point(String key) {
+        return ByteBuffer.wrap(
+                        Digests.newDigest().digest(key.getBytes(StandardCharsets.UTF_8)))
+                .getLong();
+    }
+}
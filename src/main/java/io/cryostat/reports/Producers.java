@@ -15,21 +15,41 @@
  */
 package io.cryostat.reports;
 
-import java.util.concurrent.ForkJoinPool;
-
 import io.cryostat.core.log.Logger;
 import io.cryostat.core.reports.InterruptibleReportGenerator;
 import io.cryostat.core.sys.FileSystem;
 
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Disposes;
+import jakarta.inject.Singleton;
 import jakarta.ws.rs.Produces;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 public class Producers {
 
+    // not a client proxy, so that the generator is created at startup along with the resource
     @Produces
-    @ApplicationScoped
-    InterruptibleReportGenerator produceReportGenerator() {
-        return new InterruptibleReportGenerator(ForkJoinPool.commonPool(), Logger.INSTANCE);
+    @Singleton
+    InterruptibleReportGenerator produceReportGenerator(AnalysisExecutor executor) {
+        return new InterruptibleReportGenerator(executor, Logger.INSTANCE);
+    }
+
+    @Produces
+    @Singleton
+    AnalysisExecutor produceAnalysisExecutor(
+            @ConfigProperty(name = "io.cryostat.reports.analysis.parallelism", defaultValue = "0")
+                    String parallelism,
+            @ConfigProperty(name = "io.cryostat.reports.analysis.queue-size", defaultValue = "4")
+                    String queueSize) {
+        int threads = Integer.parseInt(parallelism);
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        return new AnalysisExecutor(threads, Integer.parseInt(queueSize));
+    }
+
+    void disposeAnalysisExecutor(@Disposes AnalysisExecutor executor) {
+        executor.shutdownNow();
     }
 
     @Produces
@@ -0,0 +1,230 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
+import org.openjdk.jmc.flightrecorder.rules.IRule;
+
+/**
+ * Parses recordings and evaluates rules on the analysis executor, reporting each rule's result to
+ * a {@link Listener} as soon as it has been evaluated. The cost of each rule evaluation is also
+ * reported to the listener and folded into the {@link RuleStatistics}. Degraded recordings are
+ * analyzed in several passes, as planned by {@link LargeRecordings}.
+ */
+@ApplicationScoped
+public class RecordingAnalyzer {
+
+    @Inject AnalysisExecutor executor;
+    @Inject ReportMetrics metrics;
+    @Inject RuleStatistics statistics;
+    @Inject ParsedRecordingCache parsedCache;
+    @Inject ChunkedRecordingParser parser;
+    @Inject HeapEstimator estimator;
+    @Inject LargeRecordings largeRecordings;
+    @Inject IncrementalAnalyses incremental;
+
+    private final Logger logger = Logger.getLogger(RecordingAnalyzer.class);
+
+    public interface Listener {
+        default void onRuleStarted(IRule rule) {}
+
+        void onResult(RuleResult result);
+
+        default void onProfile(RuleProfile profile) {}
+
+        void onComplete();
+
+        void onError(Throwable t);
+    }
+
+    public Future<?> analyze(
+            UploadedRecording recording, Predicate<IRule> predicate, Listener listener) {
+        return analyze(recording, null, ParseFilter.NONE, predicate, listener);
+    }
+
+    public Future<?> analyze(
+            UploadedRecording recording,
+            String digest,
+            ParseFilter filter,
+            Predicate<IRule> predicate,
+            Listener listener) {
+        return analyze(recording, digest, null, filter, predicate, listener);
+    }
+
+    /**
+     * @param digest the digest of the uploaded recording, scoped to the parse filter, used to
+     *     reuse and retain the parsed recording in the {@link ParsedRecordingCache}, or null to
+     *     always parse
+     * @param recordingId the client's id for a continuous recording which is uploaded repeatedly,
+     *     so that only its newly appended chunks are parsed by {@link IncrementalAnalyses}, or null
+     * @param filter restricts the events loaded from the recording
+     */
+    public Future<?> analyze(
+            UploadedRecording recording,
+            String digest,
+            String recordingId,
+            ParseFilter filter,
+            Predicate<IRule> predicate,
+            Listener listener) {
+        return executor.submit(
+                () -> {
+                    try {
+                        List<IRule> rules = RuleEvaluator.selectRules(predicate);
+                        if (recording.degraded()) {
+                            evaluateInPasses(recording, filter, rules, listener);
+                        } else {
+                            IItemCollection items =
+                                    load(recording, digest, recordingId, filter, rules);
+                            long parsed = System.nanoTime();
+                            evaluator(items, listener)
+                                    .evaluate(rules, listener::onRuleStarted, listener::onResult);
+                            metrics.recordStage(
+                                    ReportMetrics.STAGE_EVALUATION, System.nanoTime() - parsed);
+                        }
+                        listener.onComplete();
+                    } catch (Exception e) {
+                        listener.onError(e);
+                    }
+                });
+    }
+
+    /**
+     * Parse a whole recording and evaluate the rules concurrently, as the report generator does,
+     * for requests which are answered with a whole report. Unlike the generator, the chunks of an
+     * uncompressed recording are parsed concurrently by the {@link ChunkedRecordingParser}. Rule
+     * results are reported in no particular order, and rule starts are not reported.
+     */
+    public Future<?> report(
+            UploadedRecording recording, Predicate<IRule> predicate, Listener listener) {
+        return executor.submit(
+                () -> {
+                    try {
+                        List<IRule> rules = RuleEvaluator.selectRules(predicate);
+                        IItemCollection items =
+                                load(recording, null, null, ParseFilter.NONE, rules);
+                        long parsed = System.nanoTime();
+                        evaluator(items, listener)
+                                .evaluate(
+                                        rules,
+                                        executor,
+                                        executor.getMaximumPoolSize(),
+                                        listener::onResult);
+                        metrics.recordStage(
+                                ReportMetrics.STAGE_EVALUATION, System.nanoTime() - parsed);
+                        listener.onComplete();
+                    } catch (Exception e) {
+                        listener.onError(e);
+                    }
+                });
+    }
+
+    private RuleEvaluator evaluator(IItemCollection items, Listener listener) {
+        return new RuleEvaluator(
+                items,
+                profile -> {
+                    statistics.record(profile);
+                    metrics.recordRule(profile);
+                    listener.onProfile(profile);
+                });
+    }
+
+    /**
+     * Evaluate the rules against a recording too large to parse at once, parsing only the events
+     * needed by one group of rules at a time. Each pass's events are unreachable once its rules
+     * have been evaluated.
+     */
+    private void evaluateInPasses(
+            UploadedRecording recording, ParseFilter filter, List<IRule> rules, Listener listener)
+            throws IOException, CouldNotLoadRecordingException, InterruptedException {
+        long start = System.nanoTime();
+        List<LargeRecordings.Pass> passes =
+                largeRecordings.plan(recording, rules, parser.census(recording, filter));
+        metrics.recordStage(ReportMetrics.STAGE_PARSE, System.nanoTime() - start);
+        logger.infof(
+                "Analyzing %s in %d passes within %dM",
+                recording.file(), passes.size(), largeRecordings.workingSet() / (1024 * 1024));
+        for (LargeRecordings.Pass pass : passes) {
+            long passStart = System.nanoTime();
+            IItemCollection items = parser.parse(recording, pass.filter(filter));
+            long parsed = System.nanoTime();
+            metrics.recordStage(ReportMetrics.STAGE_PARSE, parsed - passStart);
+            evaluator(items, listener)
+                    .evaluate(
+                            pass.rules(),
+                            listener::onRuleStarted,
+                            result ->
+                                    listener.onResult(
+                                            pass.isWindowed()
+                                                    ? result.withStatus(
+                                                            RuleResult.Status.WINDOWED)
+                                                    : result));
+            metrics.recordStage(ReportMetrics.STAGE_EVALUATION, System.nanoTime() - parsed);
+        }
+    }
+
+    private IItemCollection load(
+            UploadedRecording recording,
+            String digest,
+            String recordingId,
+            ParseFilter filter,
+            List<IRule> rules)
+            throws IOException, CouldNotLoadRecordingException, InterruptedException {
+        boolean cacheable = digest != null && parsedCache.isEnabled();
+        if (cacheable) {
+            Optional<IItemCollection> cached = parsedCache.get(digest);
+            if (cached.isPresent()) {
+                return cached.get();
+            }
+        }
+        if (recordingId != null && incremental.accepts(recording, filter)) {
+            // the chunks are retained by the incremental state rather than by the parsed cache
+            long start = System.nanoTime();
+            IItemCollection items = incremental.parse(recordingId, recording);
+            metrics.recordStage(ReportMetrics.STAGE_PARSE, System.nanoTime() - start);
+            return items;
+        }
+        if (!cacheable
+                && filter.eventTypes().isEmpty()
+                && rules.size() < RuleCatalog.rules().size()) {
+            // nothing else will evaluate rules against this parse, so only the events the
+            // selected rules need are kept. A cached parse stays complete for other filters.
+            filter = filter.withEventTypes(RuleCatalog.requiredEventTypes(rules));
+        }
+        HeapEstimator.Measurement measurement =
+                estimator.measure(recording, executor::getActiveCount);
+        long start = System.nanoTime();
+        IItemCollection items = parser.parse(recording, filter);
+        metrics.recordStage(ReportMetrics.STAGE_PARSE, System.nanoTime() - start);
+        if (filter.isEmpty()) {
+            // a filtered parse keeps fewer events than the recording's size accounts for
+            measurement.finish();
+        }
+        if (cacheable) {
+            parsedCache.put(digest, items, recording.reservation().cost());
+        }
+        return items;
+    }
+}
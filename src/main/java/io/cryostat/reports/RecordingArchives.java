@@ -0,0 +1,216 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import jakarta.ws.rs.ClientErrorException;
+import jakarta.ws.rs.core.Response;
+
+/**
+ * Expands zip and (optionally gzip-compressed) tar archives of recordings into temporary files.
+ * Files which are not archives, including compressed recordings, are passed through as they are.
+ * The total size of the files expanded from one archive is bounded, so that a small archive of
+ * highly compressible entries cannot fill the disk.
+ */
+public class RecordingArchives {
+
+    private static final int TAR_BLOCK = 512;
+    private static final byte[] ZIP_MAGIC = {'P', 'K', 3, 4};
+    private static final byte[] USTAR_MAGIC = {'u', 's', 't', 'a', 'r'};
+    private static final int USTAR_OFFSET = 257;
+
+    private RecordingArchives() {}
+
+    /**
+     * @param file the path of the recording on disk
+     * @param name the name of the recording as it was uploaded
+     * @param temporary whether the path is a temporary file which should be deleted once analyzed
+     */
+    public record Recording(String name, Path file, boolean temporary) {}
+
+    /**
+     * @param maxBytes the most bytes which may be expanded from the archive
+     * @throws ClientErrorException with status 413 if the archive expands to more than maxBytes
+     */
+    public static List<Recording> expand(Path file, String name, long maxBytes)
+            throws IOException {
+        List<Recording> recordings = new ArrayList<>();
+        Expansion expansion = new Expansion(recordings, maxBytes);
+        try {
+            if (startsWith(file, ZIP_MAGIC, 0)) {
+                expansion.unzip(file);
+            } else if (isTar(file, false)) {
+                try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+                    expansion.untar(in);
+                }
+            } else if (Compression.isGzip(file) && isTar(file, true)) {
+                try (InputStream in =
+                        new BufferedInputStream(
+                                new GZIPInputStream(Files.newInputStream(file)))) {
+                    expansion.untar(in);
+                }
+            } else {
+                recordings.add(new Recording(name, file, false));
+            }
+        } catch (IOException | RuntimeException e) {
+            delete(recordings);
+            throw e;
+        }
+        return recordings;
+    }
+
+    public static void delete(List<Recording> recordings) {
+        for (Recording recording : recordings) {
+            if (recording.temporary()) {
+                try {
+                    Files.deleteIfExists(recording.file());
+                } catch (IOException e) {
+                    // best effort, the file is in the temporary directory
+                }
+            }
+        }
+    }
+
+    private static class Expansion {
+        private final List<Recording> recordings;
+        private long remaining;
+
+        Expansion(List<Recording> recordings, long maxBytes) {
+            this.recordings = recordings;
+            this.remaining = maxBytes;
+        }
+
+        void unzip(Path file) throws IOException {
+            try (ZipInputStream zip =
+                    new ZipInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                ZipEntry entry;
+                while ((entry = zip.getNextEntry()) != null) {
+                    if (!entry.isDirectory()) {
+                        recordings.add(extract(entry.getName(), zip, Long.MAX_VALUE));
+                    }
+                }
+            }
+        }
+
+        void untar(InputStream in) throws IOException {
+            byte[] header = new byte[TAR_BLOCK];
+            while (in.readNBytes(header, 0, TAR_BLOCK) == TAR_BLOCK && !isZeroBlock(header)) {
+                String name = field(header, 0, 100);
+                if (startsWith(header, USTAR_MAGIC, USTAR_OFFSET)) {
+                    String prefix = field(header, 345, 155);
+                    if (!prefix.isEmpty()) {
+                        name = prefix + "/" + name;
+                    }
+                }
+                long size;
+                try {
+                    size = Long.parseLong(field(header, 124, 12).trim(), 8);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Malformed tar entry header for " + name, e);
+                }
+                byte type = header[156];
+                if (type == '0' || type == 0) {
+                    recordings.add(extract(name, in, size));
+                } else {
+                    in.skipNBytes(size);
+                }
+                in.skipNBytes((TAR_BLOCK - size % TAR_BLOCK) % TAR_BLOCK);
+            }
+        }
+
+        private Recording extract(String name, InputStream in, long size) throws IOException {
+            if (size != Long.MAX_VALUE && size > remaining) {
+                throw new ClientErrorException(Response.Status.REQUEST_ENTITY_TOO_LARGE);
+            }
+            Path file = Files.createTempFile("batch-", ".jfr");
+            Recording recording = new Recording(name, file, true);
+            try (OutputStream out = Files.newOutputStream(file)) {
+                byte[] buffer = new byte[64 * 1024];
+                long left = size;
+                while (left > 0) {
+                    int n = in.read(buffer, 0, (int) Math.min(buffer.length, left));
+                    if (n < 0) {
+                        if (size == Long.MAX_VALUE) {
+                            break;
+                        }
+                        throw new IOException("Truncated archive entry " + name);
+                    }
+                    if (n > remaining) {
+                        throw new ClientErrorException(Response.Status.REQUEST_ENTITY_TOO_LARGE);
+                    }
+                    out.write(buffer, 0, n);
+                    remaining -= n;
+                    left -= n;
+                }
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(file);
+                throw e;
+            }
+            return recording;
+        }
+    }
+
+    private static boolean isTar(Path file, boolean gzipped) throws IOException {
+        try (InputStream in =
+                gzipped
+                        ? new GZIPInputStream(Files.newInputStream(file))
+                        : Files.newInputStream(file)) {
+            byte[] header = in.readNBytes(TAR_BLOCK);
+            return header.length == TAR_BLOCK && startsWith(header, USTAR_MAGIC, USTAR_OFFSET);
+        }
+    }
+
+    private static boolean startsWith(Path file, byte[] magic, int offset) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return startsWith(in.readNBytes(offset + magic.length), magic, offset);
+        }
+    }
+
+    private static boolean startsWith(byte[] bytes, byte[] magic, int offset) {
+        return bytes.length >= offset + magic.length
+                && Arrays.equals(bytes, offset, offset + magic.length, magic, 0, magic.length);
+    }
+
+    private static boolean isZeroBlock(byte[] block) {
+        for (byte b : block) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String field(byte[] header, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+}
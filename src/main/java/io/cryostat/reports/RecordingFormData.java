@@ -28,4 +28,32 @@ public class RecordingFormData {
     @RestForm
     @PartType(MediaType.TEXT_PLAIN)
     public String filter;
+
+    @RestForm
+    @PartType(MediaType.TEXT_PLAIN)
+    public boolean partial;
+
+    @RestForm
+    @PartType(MediaType.TEXT_PLAIN)
+    public boolean profile;
+
+    @RestForm
+    @PartType(MediaType.TEXT_PLAIN)
+    public String start;
+
+    @RestForm
+    @PartType(MediaType.TEXT_PLAIN)
+    public String end;
+
+    @RestForm
+    @PartType(MediaType.TEXT_PLAIN)
+    public String last;
+
+    @RestForm
+    @PartType(MediaType.TEXT_PLAIN)
+    public String eventTypes;
+
+    @RestForm
+    @PartType(MediaType.TEXT_PLAIN)
+    public String recordingId;
 }
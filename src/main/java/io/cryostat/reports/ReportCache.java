@@ -0,0 +1,181 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Bounded cache of serialized report results. Entries are keyed by the digest of the uploaded
+ * recording and the normalized rule filter, and are evicted in least-recently-used order once the
+ * configured byte budget is exceeded, or once they are older than the configured TTL.
+ */
+@ApplicationScoped
+public class ReportCache {
+
+    @ConfigProperty(name = "io.cryostat.reports.cache.max-bytes", defaultValue = "67108864")
+    String maxBytes;
+
+    @ConfigProperty(name = "io.cryostat.reports.cache.ttl", defaultValue = "300000")
+    String ttlMs;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong ruleHits = new AtomicLong();
+    private final AtomicLong ruleMisses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public boolean isEnabled() {
+        return Long.parseLong(maxBytes) > 0;
+    }
+
+    public static String key(String digest, String filter) {
+        return digest + "/" + normalizeFilter(filter);
+    }
+
+    public static String ruleKey(String digest, String ruleId) {
+        return digest + "#" + ruleId;
+    }
+
+    static String normalizeFilter(String filter) {
+        if (StringUtils.isBlank(filter)) {
+            return "";
+        }
+        return Arrays.stream(filter.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .distinct()
+                .sorted()
+                .collect(Collectors.joining(","));
+    }
+
+    public Optional<String> get(String key) {
+        return lookup(key, hits, misses);
+    }
+
+    /**
+     * Look up an individually cached rule result. A report assembled from rule results looks up
+     * every rule, so these lookups are counted apart from whole-report lookups rather than
+     * inflating their hit and miss counts.
+     */
+    public Optional<String> getRule(String digest, String ruleId) {
+        return lookup(ruleKey(digest, ruleId), ruleHits, ruleMisses);
+    }
+
+    private synchronized Optional<String> lookup(String key, AtomicLong hits, AtomicLong misses) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+        if (entry.isExpired(System.nanoTime())) {
+            remove(key, entry);
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+        hits.incrementAndGet();
+        return Optional.of(entry.value);
+    }
+
+    public synchronized void put(String key, String value) {
+        long limit = Long.parseLong(maxBytes);
+        long size = sizeOf(key, value);
+        if (size > limit) {
+            return;
+        }
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            currentBytes -= previous.size;
+        }
+        long expiry = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Long.parseLong(ttlMs));
+        entries.put(key, new Entry(value, size, expiry));
+        currentBytes += size;
+        evict(limit);
+    }
+
+    public synchronized CacheStats stats() {
+        return new CacheStats(
+                hits.get(),
+                misses.get(),
+                ruleHits.get(),
+                ruleMisses.get(),
+                evictions.get(),
+                entries.size(),
+                currentBytes);
+    }
+
+    private void evict(long limit) {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next().getValue();
+            if (currentBytes <= limit && !entry.isExpired(now)) {
+                continue;
+            }
+            it.remove();
+            currentBytes -= entry.size;
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void remove(String key, Entry entry) {
+        entries.remove(key);
+        currentBytes -= entry.size;
+        evictions.incrementAndGet();
+    }
+
+    private static long sizeOf(String key, String value) {
+        return (long) key.length() + value.length();
+    }
+
+    private static class Entry {
+        final String value;
+        final long size;
+        final long expiry;
+
+        Entry(String value, long size, long expiry) {
+            this.value = value;
+            this.size = size;
+            this.expiry = expiry;
+        }
+
+        boolean isExpired(long now) {
+            return now - expiry > 0;
+        }
+    }
+
+    public record CacheStats(
+            long hits,
+            long misses,
+            long ruleHits,
+            long ruleMisses,
+            long evictions,
+            int entries,
+            long bytes) {}
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import java.util.UUID;
+import java.util.concurrent.Future;
+
+/** A report analysis submitted through the asynchronous jobs API. */
+public class ReportJob {
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED,
+        CANCELLED;
+
+        boolean isFinished() {
+            return this == COMPLETED || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    private final String id = UUID.randomUUID().toString();
+    private final String fileName;
+    private final long size;
+    private final long submitted = System.currentTimeMillis();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile long bytesRead;
+    private volatile long started;
+    private volatile long finished;
+    private volatile String result;
+    private volatile String error;
+    private volatile Future<?> task;
+    private final Cancellation cancellation = new Cancellation();
+
+    ReportJob(String fileName, long size) {
+        this.fileName = fileName;
+        this.size = size;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getResult() {
+        return result;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    long getFinished() {
+        return finished;
+    }
+
+    /**
+     * @return the fraction of the recording consumed by the parser so far. This reaches 1 once
+     *     parsing is complete, and stays below 1 while rules are still being evaluated.
+     */
+    public double getProgress() {
+        if (status == Status.COMPLETED) {
+            return 1;
+        }
+        if (size <= 0) {
+            return 0;
+        }
+        return Math.min(0.99, (double) bytesRead / size);
+    }
+
+    public JobStatus toStatus() {
+        return new JobStatus(
+                id,
+                fileName,
+                status,
+                getProgress(),
+                submitted,
+                started > 0 ? started : null,
+                finished > 0 ? finished : null,
+                error);
+    }
+
+    Cancellation cancellation() {
+        return cancellation;
+    }
+
+    synchronized void setTask(Future<?> task) {
+        this.task = task;
+        if (status == Status.CANCELLED) {
+            task.cancel(true);
+        }
+    }
+
+    void onBytesRead(long count) {
+        this.bytesRead = count;
+        if (status == Status.QUEUED) {
+            markStarted();
+        }
+    }
+
+    private synchronized void markStarted() {
+        if (status == Status.QUEUED) {
+            status = Status.RUNNING;
+            started = System.currentTimeMillis();
+        }
+    }
+
+    synchronized void complete(String result) {
+        if (status.isFinished()) {
+            return;
+        }
+        this.result = result;
+        finish(Status.COMPLETED);
+    }
+
+    synchronized void fail(Throwable t) {
+        if (status.isFinished()) {
+            return;
+        }
+        this.error = t.getMessage() != null ? t.getMessage() : t.getClass().getName();
+        finish(Status.FAILED);
+    }
+
+    synchronized boolean cancel() {
+        if (status.isFinished()) {
+            return false;
+        }
+        finish(Status.CANCELLED);
+        cancellation.cancel(Cancellation.Reason.CANCELLED);
+        Future<?> f = task;
+        if (f != null) {
+            f.cancel(true);
+        }
+        return true;
+    }
+
+    private void finish(Status status) {
+        this.status = status;
+        this.finished = System.currentTimeMillis();
+    }
+
+    public record JobStatus(
+            String id,
+            String fileName,
+            Status status,
+            double progress,
+            long submitted,
+            Long started,
+            Long finished,
+            String error) {}
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+
+import io.cryostat.core.reports.InterruptibleReportGenerator;
+import io.cryostat.core.reports.InterruptibleReportGenerator.AnalysisResult;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import org.openjdk.jmc.flightrecorder.rules.IRule;
+
+/**
+ * Runs report analyses that outlive the HTTP request which submitted them. Each job holds its
+ * recording file and admission reservation until the analysis finishes or is cancelled, and
+ * finished jobs are retained for a configurable time so that their results can be fetched.
+ * Degraded recordings are analyzed in passes by the {@link RecordingAnalyzer}, and report no
+ * parsing progress.
+ */
+@ApplicationScoped
+public class ReportJobs {
+
+    private static final long AWAIT_POLL_MS = 1000;
+
+    @ConfigProperty(name = "io.cryostat.reports.jobs.retention", defaultValue = "600000")
+    String retentionMs;
+
+    @Inject Logger logger;
+    @Inject InterruptibleReportGenerator generator;
+    @Inject ReportCache cache;
+    @Inject ReportSerializer serializer;
+    @Inject RecordingAnalyzer analyzer;
+
+    private final Map<String, ReportJob> jobs = new ConcurrentHashMap<>();
+    private ExecutorService coordinator;
+    private ScheduledExecutorService reaper;
+
+    void onStart(@Observes StartupEvent ev) {
+        coordinator =
+                Executors.newCachedThreadPool(
+                        r -> {
+                            Thread t = new Thread(r, "report-job");
+                            t.setDaemon(true);
+                            return t;
+                        });
+        reaper =
+                Executors.newSingleThreadScheduledExecutor(
+                        r -> {
+                            Thread t = new Thread(r, "report-job-reaper");
+                            t.setDaemon(true);
+                            return t;
+                        });
+        long period = Math.max(1000, Long.parseLong(retentionMs) / 10);
+        reaper.scheduleAtFixedRate(this::purgeExpired, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    void onStop(@Observes ShutdownEvent ev) {
+        reaper.shutdownNow();
+        jobs.values().forEach(ReportJob::cancel);
+        coordinator.shutdownNow();
+    }
+
+    public ReportJob submit(
+            UploadedRecording recording,
+            String fileName,
+            Predicate<IRule> predicate,
+            String cacheKey) {
+        ReportJob job = new ReportJob(fileName, recording.size());
+        jobs.put(job.getId(), job);
+        // the job outlives the request which submitted it, so it is only cancelled with the job
+        UploadedRecording owned = recording.withCancellation(job.cancellation());
+        coordinator.execute(() -> run(job, owned, predicate, cacheKey));
+        logger.infof("Submitted job %s for %s", job.getId(), fileName);
+        return job;
+    }
+
+    public ReportJob completed(String fileName, String result) {
+        ReportJob job = new ReportJob(fileName, result.length());
+        job.complete(result);
+        jobs.put(job.getId(), job);
+        return job;
+    }
+
+    public Optional<ReportJob> get(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    public Collection<ReportJob> list() {
+        return jobs.values();
+    }
+
+    /**
+     * Cancel the job if it is still running, otherwise discard its retained result.
+     *
+     * @return the job, if it was known
+     */
+    public Optional<ReportJob> delete(String id) {
+        ReportJob job = jobs.get(id);
+        if (job == null) {
+            return Optional.empty();
+        }
+        if (!job.cancel()) {
+            jobs.remove(id);
+        }
+        return Optional.of(job);
+    }
+
+    private void run(
+            ReportJob job,
+            UploadedRecording recording,
+            Predicate<IRule> predicate,
+            String cacheKey) {
+        Future<?> evalMapFuture = null;
+        try {
+            String result;
+            if (recording.degraded()) {
+                CompletableFuture<Map<String, RuleResult>> done = new CompletableFuture<>();
+                evalMapFuture = analyzeInPasses(recording, predicate, done);
+                job.setTask(evalMapFuture);
+                result = serializer.mapper().writeValueAsString(await(done, evalMapFuture));
+            } else {
+                try (var stream =
+                        new CountingInputStream(recording.openStream(), job::onBytesRead)) {
+                    Future<Map<String, AnalysisResult>> future =
+                            generator.generateEvalMapInterruptibly(stream, predicate);
+                    evalMapFuture = future;
+                    job.setTask(future);
+                    result = serializer.mapper().writeValueAsString(future.get());
+                }
+            }
+            if (cacheKey != null) {
+                cache.put(cacheKey, result);
+            }
+            job.complete(result);
+        } catch (InterruptedException | CancellationException e) {
+            job.cancel();
+        } catch (ExecutionException e) {
+            logger.warnf(e.getCause(), "Job %s failed", job.getId());
+            job.fail(e.getCause());
+        } catch (Exception e) {
+            logger.warnf(e, "Job %s failed", job.getId());
+            job.fail(e);
+        } finally {
+            if (evalMapFuture != null) {
+                evalMapFuture.cancel(true);
+            }
+            job.cancellation().cancel(Cancellation.Reason.COMPLETED);
+            recording.reservation().close();
+            try {
+                Files.deleteIfExists(recording.file());
+            } catch (Exception e) {
+                logger.warn(e);
+            }
+            logger.infof(
+                    "Job %s finished with status %s after %dms",
+                    job.getId(),
+                    job.getStatus(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - recording.start()));
+        }
+    }
+
+    /**
+     * Degraded recordings are too large for the generator, so their rules are evaluated in passes
+     * by the {@link RecordingAnalyzer} instead, and collected into a report of the same shape.
+     */
+    private Future<?> analyzeInPasses(
+            UploadedRecording recording,
+            Predicate<IRule> predicate,
+            CompletableFuture<Map<String, RuleResult>> done) {
+        Map<String, RuleResult> results = new LinkedHashMap<>();
+        return analyzer.analyze(
+                recording,
+                predicate,
+                new RecordingAnalyzer.Listener() {
+                    @Override
+                    public void onResult(RuleResult result) {
+                        results.put(result.id(), result.asReportEntry());
+                    }
+
+                    @Override
+                    public void onComplete() {
+                        done.complete(results);
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        done.completeExceptionally(t);
+                    }
+                });
+    }
+
+    /** Wait for the listener, unless the task is cancelled before it could be notified. */
+    private static <T> T await(CompletableFuture<T> done, Future<?> task)
+            throws InterruptedException, ExecutionException {
+        while (true) {
+            try {
+                return done.get(AWAIT_POLL_MS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (task.isCancelled()) {
+                    throw new CancellationException();
+                }
+            }
+        }
+    }
+
+    private void purgeExpired() {
+        long cutoff = System.currentTimeMillis() - Long.parseLong(retentionMs);
+        jobs.values()
+                .removeIf(
+                        job -> {
+                            boolean expired =
+                                    job.getStatus().isFinished() && job.getFinished() < cutoff;
+                            if (expired) {
+                                logger.infof("Expiring job %s", job.getId());
+                            }
+                            return expired;
+                        });
+    }
+}
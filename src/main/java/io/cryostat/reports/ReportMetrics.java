@@ -0,0 +1,193 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.vertx.http.runtime.filters.Filters;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.ext.web.RoutingContext;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+
+/**
+ * Records per-stage latencies, payload sizes, response outcomes and capacity gauges for report
+ * requests. Request-level metrics are collected by an HTTP filter which runs before the request
+ * body is received, so that upload time and total request time include the body transfer. Requests
+ * are tagged with the route they were sent to, out of a fixed set, rather than with their path, so
+ * that arbitrary paths cannot create new series.
+ */
+@ApplicationScoped
+public class ReportMetrics {
+
+    static final String RECEIVED_AT = "io.cryostat.reports.received-at";
+    static final String PREFIX = "cryostat.reports";
+
+    public static final String STAGE_UPLOAD = "upload";
+    public static final String STAGE_DECOMPRESSION = "decompression";
+    public static final String STAGE_VALIDATION = "validation";
+    public static final String STAGE_ADMISSION = "admission";
+    public static final String STAGE_PARSE = "parse";
+    public static final String STAGE_EVALUATION = "evaluation";
+    public static final String STAGE_SERIALIZATION = "serialization";
+
+    static final String ROUTE_OTHER = "other";
+    private static final List<String> ROUTES =
+            List.of("/report", "/report/stream", "/report/batch", "/report/jobs");
+
+    @Inject MeterRegistry registry;
+    @Inject ReportCache cache;
+    @Inject AnalysisExecutor executor;
+    @Inject AdmissionController admission;
+    @Inject ParsedRecordingCache parsedCache;
+    @Inject HeapEstimator estimator;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    void onStart(@Observes StartupEvent ev) {
+        Gauge.builder(PREFIX + ".requests.inflight", inFlight, AtomicInteger::get)
+                .description("Report requests currently being received or processed")
+                .register(registry);
+        Gauge.builder(PREFIX + ".heap.headroom", ReportMetrics::heapHeadroom)
+                .description("Heap which could still be allocated before reaching the maximum")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder(PREFIX + ".executor.active", executor, AnalysisExecutor::getActiveCount)
+                .register(registry);
+        Gauge.builder(PREFIX + ".executor.queued", executor, e -> e.getQueue().size())
+                .register(registry);
+        FunctionCounter.builder(
+                        PREFIX + ".executor.rejected",
+                        executor,
+                        AnalysisExecutor::getRejectedCount)
+                .register(registry);
+        Gauge.builder(PREFIX + ".admission.reserved", admission, a -> a.stats().reserved())
+                .baseUnit("bytes")
+                .register(registry);
+        FunctionCounter.builder(PREFIX + ".cache.hits", cache, c -> c.stats().hits())
+                .register(registry);
+        FunctionCounter.builder(PREFIX + ".cache.misses", cache, c -> c.stats().misses())
+                .register(registry);
+        FunctionCounter.builder(PREFIX + ".cache.rule.hits", cache, c -> c.stats().ruleHits())
+                .register(registry);
+        FunctionCounter.builder(PREFIX + ".cache.rule.misses", cache, c -> c.stats().ruleMisses())
+                .register(registry);
+        FunctionCounter.builder(PREFIX + ".cache.evictions", cache, c -> c.stats().evictions())
+                .register(registry);
+        Gauge.builder(PREFIX + ".cache.size", cache, c -> c.stats().bytes())
+                .baseUnit("bytes")
+                .register(registry);
+        FunctionCounter.builder(PREFIX + ".parsed.cache.hits", parsedCache, c -> c.stats().hits())
+                .register(registry);
+        Gauge.builder(PREFIX + ".parsed.cache.size", parsedCache, c -> c.stats().bytes())
+                .description("Estimated heap retained by cached parsed recordings")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder(PREFIX + ".estimator.factor", estimator, e -> e.stats().factor())
+                .description("Estimated heap per byte of recording, including the safety margin")
+                .register(registry);
+    }
+
+    void registerFilter(@Observes Filters filters) {
+        filters.register(
+                ctx -> {
+                    if (ctx.request().method() != HttpMethod.POST
+                            || !ctx.normalizedPath().startsWith("/report")) {
+                        ctx.next();
+                        return;
+                    }
+                    long receivedAt = System.nanoTime();
+                    ctx.put(RECEIVED_AT, receivedAt);
+                    inFlight.incrementAndGet();
+                    ctx.addEndHandler().onComplete(ar -> onEnd(ctx, receivedAt));
+                    ctx.next();
+                },
+                100);
+    }
+
+    private void onEnd(RoutingContext ctx, long receivedAt) {
+        inFlight.decrementAndGet();
+        String status = String.valueOf(ctx.response().getStatusCode());
+        Timer.builder(PREFIX + ".request")
+                .description("Total time to receive and answer a request")
+                .tag("path", route(ctx.normalizedPath()))
+                .tag("status", status)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(System.nanoTime() - receivedAt, TimeUnit.NANOSECONDS);
+        registry.counter(PREFIX + ".responses", "status", status).increment();
+    }
+
+    /** Record the time between the request arriving and its body being fully received. */
+    public void recordUpload(RoutingContext ctx, long bytes) {
+        Long receivedAt = ctx.get(RECEIVED_AT);
+        if (receivedAt != null) {
+            recordStage(STAGE_UPLOAD, System.nanoTime() - receivedAt);
+        }
+        DistributionSummary.builder(PREFIX + ".upload.size")
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(bytes);
+    }
+
+    public void recordDecompressedSize(long bytes) {
+        DistributionSummary.builder(PREFIX + ".decompressed.size")
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(bytes);
+    }
+
+    public void recordStage(String stage, long nanos) {
+        Timer.builder(PREFIX + ".stage")
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordRule(RuleProfile profile) {
+        Timer.builder(PREFIX + ".rule")
+                .description("Time spent evaluating a single rule")
+                .tag("rule", profile.id())
+                .register(registry)
+                .record((long) (profile.wallMs() * 1_000_000), TimeUnit.NANOSECONDS);
+    }
+
+    /** The route a request path belongs to, or {@link #ROUTE_OTHER}. */
+    static String route(String path) {
+        String trimmed =
+                path.length() > 1 && path.endsWith("/")
+                        ? path.substring(0, path.length() - 1)
+                        : path;
+        return ROUTES.contains(trimmed) ? trimmed : ROUTE_OTHER;
+    }
+
+    private static double heapHeadroom() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+    }
+}
@@ -15,41 +15,77 @@
  */
 package io.cryostat.reports;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.zip.ZipException;
 
 import io.cryostat.core.reports.InterruptibleReportGenerator;
 import io.cryostat.core.reports.InterruptibleReportGenerator.AnalysisResult;
 import io.cryostat.core.sys.FileSystem;
 import io.cryostat.core.util.RuleFilterParser;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.quarkus.runtime.StartupEvent;
 import io.smallrye.common.annotation.Blocking;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Vertx;
 import io.vertx.ext.web.RoutingContext;
 import jakarta.enterprise.event.Observes;
 import jakarta.inject.Inject;
+import jakarta.ws.rs.BadRequestException;
 import jakarta.ws.rs.BeanParam;
-import jakarta.ws.rs.ClientErrorException;
 import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.DELETE;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.InternalServerErrorException;
+import jakarta.ws.rs.NotFoundException;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.ServerErrorException;
+import jakarta.ws.rs.ServiceUnavailableException;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
-import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.StringUtils;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
+import org.jboss.resteasy.reactive.RestMediaType;
+import org.jboss.resteasy.reactive.RestStreamElementType;
 import org.jboss.resteasy.reactive.multipart.FileUpload;
 import org.openjdk.jmc.common.io.IOToolkit;
 import org.openjdk.jmc.flightrecorder.rules.IRule;
@@ -66,20 +102,58 @@ public class ReportResource {
     @ConfigProperty(name = "io.cryostat.reports.timeout", defaultValue = "29000")
     String timeoutMs;
 
+    @ConfigProperty(name = "io.cryostat.reports.streaming-decompression", defaultValue = "false")
+    String streamingDecompression;
+
+    @ConfigProperty(name = "io.cryostat.reports.analysis.retry-after", defaultValue = "5")
+    String retryAfterSeconds;
+
+    @ConfigProperty(name = "io.cryostat.reports.ingest.mmap", defaultValue = "false")
+    String mappedIngest;
+
+    @ConfigProperty(
+            name = "io.cryostat.reports.batch.max-expanded-bytes",
+            defaultValue = "10737418240")
+    String maxExpandedBytes;
+
     @Inject Logger logger;
     @Inject InterruptibleReportGenerator generator;
     @Inject FileSystem fs;
+    @Inject ReportCache cache;
+    @Inject AnalysisExecutor executor;
+    @Inject AdmissionController admission;
+    @Inject ReportJobs jobs;
+    @Inject RecordingAnalyzer analyzer;
+    @Inject Vertx vertx;
+    @Inject ReportMetrics metrics;
+    @Inject RuleStatistics ruleStatistics;
+    @Inject ParsedRecordingCache parsedCache;
+    @Inject BatchProcessor batch;
+    @Inject HeapEstimator estimator;
+    @Inject LargeRecordings largeRecordings;
+    @Inject RequestThreads requestThreads;
+    @Inject ReportSerializer serializer;
+    @Inject IncrementalAnalyses incremental;
+    @Inject PeerRing peers;
+    @Inject ChunkedRecordingParser parser;
 
     RuleFilterParser rfp = new RuleFilterParser();
 
     void onStart(@Observes StartupEvent ev) {
         logger.infof(
-                "CPUs: %d singlethread: %b maxMemory: %dM memoryFactor: %s timeout: %sms",
+                "CPUs: %d singlethread: %b maxMemory: %dM memoryFactor: %s timeout: %sms"
+                        + " streamingDecompression: %s mmap: %s analysisThreads: %d rules: %d",
                 Runtime.getRuntime().availableProcessors(),
                 Boolean.getBoolean(SINGLETHREAD_PROPERTY),
                 Runtime.getRuntime().maxMemory() / (1024 * 1024),
                 memoryFactor,
-                timeoutMs);
+                timeoutMs,
+                streamingDecompression,
+                mappedIngest,
+                executor.getMaximumPoolSize(),
+                // loads the rules now rather than on the first request, unless the native image
+                // already holds them
+                RuleCatalog.rules().size());
     }
 
     @Path("health")
@@ -87,98 +161,931 @@ public class ReportResource {
     @Produces(MediaType.TEXT_PLAIN)
     public void healthCheck() {}
 
-    @Blocking
-    @Path("report")
+    @Path("stats")
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Map<String, Object> stats() {
+        return Map.of(
+                "cache", cache.stats(),
+                "parsedCache", parsedCache.stats(),
+                "incremental", incremental.stats(),
+                "estimator", estimator.stats(),
+                "executor", executor.stats(),
+                "admission", admission.stats());
+    }
+
+    /**
+     * How busy this replica is, for load balancers choosing between replicas. Heap retained by
+     * caches counts as free capacity, since it is reclaimed for incoming reports.
+     */
+    @Path("load")
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Map<String, Object> load() {
+        AdmissionController.AdmissionStats admitted = admission.stats();
+        Map<String, Object> load = new LinkedHashMap<>();
+        load.put("inFlight", admitted.inFlight());
+        load.put("inFlightBytes", admitted.reserved() - admitted.retained());
+        load.put("queueDepth", executor.getQueue().size() + admitted.waiting());
+        load.put("freeBytes", admitted.budget() - admitted.reserved() + admitted.retained());
+        load.put("budgetBytes", admitted.budget());
+        load.put("cache", cache.stats());
+        load.put("parsedCache", parsedCache.stats());
+        load.put("parsedRecordings", parsedCache.digests());
+        load.put("incremental", incremental.stats());
+        if (peers.self() != null) {
+            load.put("self", peers.self());
+        }
+        return load;
+    }
+
+    /**
+     * The replica which should receive requests for the recording with the given SHA-256 digest,
+     * so that repeated requests for it are served from that replica's caches.
+     */
+    @Path("route/{digest}")
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Map<String, Object> route(@PathParam("digest") String digest) {
+        if (!peers.isEnabled()) {
+            throw new NotFoundException("No peers are configured");
+        }
+        if (!digest.matches("[0-9a-fA-F]{64}")) {
+            throw new BadRequestException("digest must be a hex SHA-256 digest");
+        }
+        String normalized = digest.toLowerCase();
+        return Map.of(
+                "digest", normalized,
+                "owner", peers.owner(normalized),
+                "self", peers.isOwner(normalized));
+    }
+
+    @Path("metrics/rules")
+    @GET
     @Produces(MediaType.APPLICATION_JSON)
+    public List<RuleStatistics.RuleStats> ruleStats() {
+        return ruleStatistics.stats();
+    }
+
+    @Path("report")
+    // any other acceptable type is answered with JSON, see ReportSerializer#negotiate
+    @Produces({MediaType.APPLICATION_JSON, ReportSerializer.APPLICATION_CBOR, MediaType.WILDCARD})
     @Consumes(MediaType.MULTIPART_FORM_DATA)
     @POST
-    public String getEval(RoutingContext ctx, @BeanParam RecordingFormData form)
+    public Uni<Response> getEval(
+            RoutingContext ctx, @BeanParam RecordingFormData form, @Context HttpHeaders headers) {
+        ReportSerializer.Format format = serializer.negotiate(headers.getAcceptableMediaTypes());
+        return requestThreads.run(() -> eval(ctx, form, format));
+    }
+
+    private Response eval(
+            RoutingContext ctx, RecordingFormData form, ReportSerializer.Format format)
             throws IOException {
         FileUpload upload = form.file;
+        metrics.recordUpload(ctx, upload.size());
+
+        ParseFilter parseFilter = ParseFilter.of(form);
+        Ingested ingested = ingest(ctx, upload, cache.isEnabled() || parsedCache.isEnabled());
+        String recordingDigest = ingested.digest();
+        if (recordingDigest != null && peers.isEnabled()) {
+            // lets the client send later requests for this recording to the replica caching it
+            ctx.response().putHeader(PeerRing.OWNER_HEADER, peers.owner(recordingDigest));
+        }
+        String digest = parseFilter.scope(recordingDigest);
+        // partial reports are assembled from individually cached rule results instead, and
+        // profiled reports must actually evaluate every rule
+        boolean perRule = form.partial || form.profile;
+        String cacheKey =
+                digest == null || perRule || !cache.isEnabled()
+                        ? null
+                        : ReportCache.key(digest, form.filter);
+        if (cacheKey != null) {
+            Optional<String> cached = cache.get(cacheKey);
+            if (cached.isPresent()) {
+                logger.infof("Cache hit for %s (%s)", upload.fileName(), cacheKey);
+                discard(ingested, upload);
+                return serializer.respond(format, cached.get());
+            }
+        }
+
+        if (executor.isSaturated()) {
+            discard(ingested, upload);
+            throw new ServiceUnavailableException(Long.parseLong(retryAfterSeconds));
+        }
 
-        Pair<java.nio.file.Path, Pair<Long, Long>> uploadResult = handleUpload(upload);
-        java.nio.file.Path file = uploadResult.getLeft();
+        UploadedRecording recording = admit(ingested, upload);
         long timeout = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(timeoutMs));
-        long start = uploadResult.getRight().getLeft();
-        long elapsed = uploadResult.getRight().getRight();
+        long start = recording.start();
+        long elapsed = recording.elapsed();
 
         Predicate<IRule> predicate = rfp.parse(form.filter);
+        String recordingId =
+                StringUtils.isNotBlank(form.recordingId)
+                                && incremental.accepts(recording, parseFilter)
+                        ? form.recordingId
+                        : null;
+        // plain and rule-filtered requests are answered by the whole-report generator. Only
+        // requests which opt in to what it cannot do, such as dropping events while parsing or
+        // reusing the chunks of an earlier upload, are assembled from individually evaluated
+        // rules.
+        if (perRule || recording.degraded() || recordingId != null || !parseFilter.isEmpty()) {
+            return ruleEval(
+                    ctx,
+                    upload,
+                    recording,
+                    predicate,
+                    digest,
+                    recordingId,
+                    parseFilter,
+                    form.partial,
+                    form.profile,
+                    cacheKey,
+                    format);
+        }
+        if (StringUtils.isBlank(form.filter) && parser.isSplit(recording)) {
+            return chunkedEval(upload, recording, predicate, cacheKey, format);
+        }
         Future<Map<String, AnalysisResult>> evalMapFuture = null;
 
-        ObjectMapper oMapper = new ObjectMapper();
-        try (var stream = fs.newInputStream(file)) {
+        AtomicLong analysisStart = new AtomicLong();
+        AtomicLong parseEnd = new AtomicLong();
+        AtomicReference<HeapEstimator.Measurement> measurement = new AtomicReference<>();
+        try (var stream =
+                new CountingInputStream(
+                        recording.openStream(),
+                        count -> {
+                            if (analysisStart.compareAndSet(0, System.nanoTime())) {
+                                // the generator parses on an analysis thread, from its first read
+                                measurement.set(
+                                        estimator.measure(recording, executor::getActiveCount));
+                            }
+                        },
+                        () -> parseEnd.set(System.nanoTime()))) {
             evalMapFuture = generator.generateEvalMapInterruptibly(stream, predicate);
-            ctxHelper(ctx, evalMapFuture);
-            return oMapper.writeValueAsString(
-                    evalMapFuture.get(timeout - elapsed, TimeUnit.NANOSECONDS));
-        } catch (ExecutionException | InterruptedException e) {
+            ctxHelper(recording, evalMapFuture);
+            Map<String, AnalysisResult> evalMap =
+                    evalMapFuture.get(timeout - elapsed, TimeUnit.NANOSECONDS);
+            long evaluated = System.nanoTime();
+            if (measurement.get() != null) {
+                // the parser may still be loading chunks once it has read to the end, so the
+                // growth is measured across the whole analysis
+                measurement.get().finish();
+            }
+            if (parseEnd.get() > 0) {
+                metrics.recordStage(
+                        ReportMetrics.STAGE_PARSE, parseEnd.get() - analysisStart.get());
+                metrics.recordStage(ReportMetrics.STAGE_EVALUATION, evaluated - parseEnd.get());
+            }
+            return respond(format, cacheKey, evalMap);
+        } catch (RejectedExecutionException e) {
+            throw new ServiceUnavailableException(Long.parseLong(retryAfterSeconds), e);
+        } catch (CancellationException | ExecutionException | InterruptedException e) {
+            // the deadline timer can cancel the analysis just before the wait itself times out
+            recording.cancellation().throwIfCancelled();
             throw new InternalServerErrorException(e);
         } catch (TimeoutException e) {
             throw new ServerErrorException(Response.Status.GATEWAY_TIMEOUT, e);
         } finally {
-            cleanupHelper(evalMapFuture, file, upload.fileName(), start);
+            cleanupHelper(evalMapFuture, recording, upload.fileName());
+        }
+    }
+
+    /**
+     * Answer a plain request for a recording of several chunks, which are parsed concurrently
+     * rather than as the single stream the generator takes. The rules are evaluated concurrently,
+     * as by the generator, and the response has the same shape.
+     */
+    private Response chunkedEval(
+            FileUpload upload,
+            UploadedRecording recording,
+            Predicate<IRule> predicate,
+            String cacheKey,
+            ReportSerializer.Format format) {
+        long timeout = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(timeoutMs));
+        Map<String, RuleResult> results = new ConcurrentHashMap<>();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        Future<?> future = null;
+        try {
+            future =
+                    analyzer.report(
+                            recording,
+                            predicate,
+                            new RecordingAnalyzer.Listener() {
+                                @Override
+                                public void onResult(RuleResult result) {
+                                    results.put(result.id(), result.asReportEntry());
+                                }
+
+                                @Override
+                                public void onComplete() {
+                                    done.complete(null);
+                                }
+
+                                @Override
+                                public void onError(Throwable t) {
+                                    done.completeExceptionally(t);
+                                }
+                            });
+            ctxHelper(recording, future);
+            done.get(timeout - recording.elapsed(), TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            throw new ServiceUnavailableException(Long.parseLong(retryAfterSeconds), e);
+        } catch (CancellationException | ExecutionException | InterruptedException e) {
+            recording.cancellation().throwIfCancelled();
+            throw new InternalServerErrorException(e);
+        } catch (TimeoutException e) {
+            throw new ServerErrorException(Response.Status.GATEWAY_TIMEOUT, e);
+        } finally {
+            cleanupHelper(future, recording, upload.fileName());
+        }
+
+        Map<String, RuleResult> report = new LinkedHashMap<>();
+        for (IRule rule : RuleEvaluator.selectRules(predicate)) {
+            RuleResult result = results.get(rule.getId());
+            if (result != null) {
+                report.put(rule.getId(), result);
+            }
+        }
+        return respond(format, cacheKey, report);
+    }
+
+    /**
+     * Evaluate rules individually. In partial mode, when the timeout expires respond with the rules
+     * that were completed in time rather than failing the whole request. Rules which did not
+     * complete are included with a timed-out status. Completed rule results are cached
+     * individually, so that a retry against the same recording only evaluates the rules that are
+     * still missing. In profile mode the results are accompanied by the cost of each evaluation,
+     * and every rule is evaluated afresh. Otherwise the response has the same shape as a report
+     * from the generator, and is cached under the given key.
+     */
+    private Response ruleEval(
+            RoutingContext ctx,
+            FileUpload upload,
+            UploadedRecording recording,
+            Predicate<IRule> predicate,
+            String digest,
+            String recordingId,
+            ParseFilter parseFilter,
+            boolean partial,
+            boolean profile,
+            String cacheKey,
+            ReportSerializer.Format format)
+            throws IOException {
+        long timeout = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(timeoutMs));
+        ObjectMapper oMapper = serializer.mapper();
+        List<IRule> rules = RuleEvaluator.selectRules(predicate);
+        Map<String, RuleResult> results = new ConcurrentHashMap<>();
+        Queue<RuleProfile> profiles = new ConcurrentLinkedQueue<>();
+        boolean reuseResults = digest != null && cache.isEnabled() && !profile;
+        if (reuseResults) {
+            for (IRule rule : rules) {
+                Optional<String> cached = cache.getRule(digest, rule.getId());
+                if (cached.isPresent()) {
+                    results.put(rule.getId(), oMapper.readValue(cached.get(), RuleResult.class));
+                }
+            }
+        }
+        Set<IRule> remaining =
+                rules.stream()
+                        .filter(rule -> !results.containsKey(rule.getId()))
+                        .collect(Collectors.toSet());
+
+        AtomicReference<IRule> current = new AtomicReference<>();
+        AtomicLong currentStart = new AtomicLong();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        Future<?> future = null;
+        boolean timedOut = false;
+        try {
+            if (!remaining.isEmpty()) {
+                future =
+                        analyzer.analyze(
+                                recording,
+                                digest,
+                                recordingId,
+                                parseFilter,
+                                remaining::contains,
+                                new RecordingAnalyzer.Listener() {
+                                    @Override
+                                    public void onRuleStarted(IRule rule) {
+                                        currentStart.set(System.nanoTime());
+                                        current.set(rule);
+                                    }
+
+                                    @Override
+                                    public void onResult(RuleResult result) {
+                                        results.put(result.id(), result);
+                                        if (reuseResults) {
+                                            cacheRuleResult(oMapper, digest, result);
+                                        }
+                                    }
+
+                                    @Override
+                                    public void onProfile(RuleProfile p) {
+                                        profiles.add(p);
+                                    }
+
+                                    @Override
+                                    public void onComplete() {
+                                        done.complete(null);
+                                    }
+
+                                    @Override
+                                    public void onError(Throwable t) {
+                                        done.completeExceptionally(t);
+                                    }
+                                });
+                ctxHelper(recording, future);
+                done.get(timeout - recording.elapsed(), TimeUnit.NANOSECONDS);
+            }
+        } catch (RejectedExecutionException e) {
+            throw new ServiceUnavailableException(Long.parseLong(retryAfterSeconds), e);
+        } catch (CancellationException | ExecutionException | InterruptedException e) {
+            // the deadline timer can cancel the analysis just before the wait itself times out,
+            // which for a partial report is no different from the wait timing out
+            if (!partial || recording.cancellation().reason() != Cancellation.Reason.DEADLINE) {
+                recording.cancellation().throwIfCancelled();
+                throw new InternalServerErrorException(e);
+            }
+            timedOut = true;
+        } catch (TimeoutException e) {
+            if (!partial) {
+                throw new ServerErrorException(Response.Status.GATEWAY_TIMEOUT, e);
+            }
+            timedOut = true;
+        } finally {
+            cleanupHelper(future, recording, upload.fileName());
+        }
+
+        if (timedOut) {
+            IRule inProgress = current.get();
+            long inProgressMs =
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - currentStart.get());
+            int incomplete = 0;
+            for (IRule rule : remaining) {
+                if (!results.containsKey(rule.getId())) {
+                    long elapsed = rule.equals(inProgress) ? inProgressMs : 0;
+                    results.putIfAbsent(rule.getId(), RuleResult.timedOut(rule, elapsed));
+                    incomplete++;
+                }
+            }
+            logger.infof(
+                    "Report for %s timed out, returning partial result with %d/%d rules timed out",
+                    upload.fileName(), incomplete, rules.size());
+        }
+
+        Map<String, RuleResult> ordered = new LinkedHashMap<>();
+        for (IRule rule : rules) {
+            RuleResult result = results.get(rule.getId());
+            if (result != null) {
+                ordered.put(rule.getId(), result);
+            }
+        }
+        if (profile) {
+            Map<String, Object> profiled =
+                    Map.of("results", ordered, "profile", List.copyOf(profiles));
+            return respond(format, null, profiled);
+        }
+        if (partial) {
+            return respond(format, null, ordered);
+        }
+        Map<String, RuleResult> report = new LinkedHashMap<>();
+        ordered.forEach((id, entry) -> report.put(id, entry.asReportEntry()));
+        return respond(format, cacheKey, report);
+    }
+
+    /** Respond with a report, and keep it as JSON in the cache if a key is given. */
+    private Response respond(
+            ReportSerializer.Format format, String cacheKey, Map<String, ?> report) {
+        return serializer.respond(
+                format, report, cacheKey == null ? null : json -> cache.put(cacheKey, json));
+    }
+
+    private void cacheRuleResult(ObjectMapper oMapper, String digest, RuleResult result) {
+        try {
+            cache.put(ReportCache.ruleKey(digest, result.id()), oMapper.writeValueAsString(result));
+        } catch (JsonProcessingException e) {
+            logger.warn(e);
+        }
+    }
+
+    @Blocking
+    @Path("report/stream")
+    @Produces(RestMediaType.APPLICATION_NDJSON)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    @Consumes(MediaType.MULTIPART_FORM_DATA)
+    @POST
+    public Multi<RuleResult> streamEvalNdjson(
+            RoutingContext ctx, @BeanParam RecordingFormData form) throws IOException {
+        return streamEval(ctx, form);
+    }
+
+    @Blocking
+    @Path("report/stream")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    @Consumes(MediaType.MULTIPART_FORM_DATA)
+    @POST
+    public Multi<RuleResult> streamEvalSse(RoutingContext ctx, @BeanParam RecordingFormData form)
+            throws IOException {
+        return streamEval(ctx, form);
+    }
+
+    private Multi<RuleResult> streamEval(RoutingContext ctx, RecordingFormData form)
+            throws IOException {
+        FileUpload upload = form.file;
+        metrics.recordUpload(ctx, upload.size());
+        ParseFilter parseFilter = ParseFilter.of(form);
+
+        if (executor.isSaturated()) {
+            throw new ServiceUnavailableException(Long.parseLong(retryAfterSeconds));
+        }
+
+        UploadedRecording recording = handleUpload(ctx, upload);
+        long timeout = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(timeoutMs));
+        long remaining = TimeUnit.NANOSECONDS.toMillis(timeout - recording.elapsed());
+        Predicate<IRule> predicate = rfp.parse(form.filter);
+        AtomicReference<Future<?>> future = new AtomicReference<>();
+        AtomicBoolean cleaned = new AtomicBoolean();
+        Runnable cleanup =
+                () -> {
+                    if (cleaned.compareAndSet(false, true)) {
+                        quietCleanup(future.get(), recording, upload.fileName());
+                    }
+                };
+        // the stream may never be subscribed to, or be dropped before it terminates, so the
+        // reservation and upload are also released once the request ends or its deadline passes
+        recording.cancellation().onCancel(cleanup);
+
+        return Multi.createFrom()
+                .emitter(
+                        emitter -> {
+                            AtomicBoolean timedOut = new AtomicBoolean();
+                            long timer =
+                                    vertx.setTimer(
+                                            Math.max(1, remaining),
+                                            id -> {
+                                                logger.infof(
+                                                        "Streaming report for %s timed out",
+                                                        upload.fileName());
+                                                timedOut.set(true);
+                                                emitter.complete();
+                                            });
+                            emitter.onTermination(
+                                    () -> {
+                                        vertx.cancelTimer(timer);
+                                        cleanup.run();
+                                    });
+                            try {
+                                future.set(
+                                        analyzer.analyze(
+                                                recording,
+                                                null,
+                                                parseFilter,
+                                                predicate,
+                                                new RecordingAnalyzer.Listener() {
+                                                    @Override
+                                                    public void onResult(RuleResult result) {
+                                                        emitter.emit(result);
+                                                    }
+
+                                                    @Override
+                                                    public void onComplete() {
+                                                        emitter.complete();
+                                                    }
+
+                                                    @Override
+                                                    public void onError(Throwable t) {
+                                                        // the stream has its own timer, which
+                                                        // may lose the race to the request's
+                                                        if (timedOut.get()
+                                                                || recording
+                                                                        .cancellation()
+                                                                        .isAbandoned()) {
+                                                            emitter.complete();
+                                                        } else {
+                                                            emitter.fail(t);
+                                                        }
+                                                    }
+                                                }));
+                                if (emitter.isCancelled()) {
+                                    future.get().cancel(true);
+                                }
+                            } catch (RejectedExecutionException e) {
+                                emitter.fail(
+                                        new ServiceUnavailableException(
+                                                Long.parseLong(retryAfterSeconds), e));
+                            }
+                        });
+    }
+
+    @Blocking
+    @Path("report/batch")
+    @Produces(RestMediaType.APPLICATION_NDJSON)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    @Consumes(MediaType.MULTIPART_FORM_DATA)
+    @POST
+    public Multi<BatchResult> batchEval(RoutingContext ctx, @BeanParam BatchFormData form) {
+        if (form.files == null || form.files.isEmpty()) {
+            throw new BadRequestException("At least one file is required");
+        }
+        metrics.recordUpload(ctx, form.files.stream().mapToLong(FileUpload::size).sum());
+        Map<String, String> filters;
+        try {
+            filters =
+                    StringUtils.isBlank(form.filters)
+                            ? Map.of()
+                            : serializer
+                                    .mapper()
+                                    .readValue(
+                                            form.filters,
+                                            new TypeReference<Map<String, String>>() {});
+        } catch (JsonProcessingException e) {
+            throw new BadRequestException("filters must be a JSON object of names to filters", e);
+        }
+
+        List<RecordingArchives.Recording> recordings = new ArrayList<>();
+        try {
+            // the limit applies to everything expanded from the batch's archives together
+            long remaining = Long.parseLong(maxExpandedBytes);
+            for (FileUpload upload : form.files) {
+                List<RecordingArchives.Recording> expanded =
+                        RecordingArchives.expand(
+                                upload.uploadedFile(), upload.fileName(), remaining);
+                recordings.addAll(expanded);
+                for (RecordingArchives.Recording r : expanded) {
+                    if (r.temporary()) {
+                        remaining -= Files.size(r.file());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            RecordingArchives.delete(recordings);
+            throw new BadRequestException(e);
+        } catch (RuntimeException e) {
+            RecordingArchives.delete(recordings);
+            throw e;
         }
+        logger.infof("Received batch of %d recordings", recordings.size());
+        return batch.process(
+                recordings.stream()
+                        .map(
+                                r ->
+                                        new BatchProcessor.Entry(
+                                                r, filters.getOrDefault(r.name(), form.filter)))
+                        .toList());
     }
 
-    private Pair<java.nio.file.Path, Pair<Long, Long>> handleUpload(FileUpload upload)
+    private void quietCleanup(Future<?> future, UploadedRecording recording, String fileName) {
+        try {
+            cleanupHelper(future, recording, fileName);
+        } catch (IOException e) {
+            logger.warn(e);
+        }
+    }
+
+    @Path("report/jobs")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Consumes(MediaType.MULTIPART_FORM_DATA)
+    @POST
+    public Uni<Response> submitJob(RoutingContext ctx, @BeanParam RecordingFormData form) {
+        return requestThreads.run(() -> doSubmitJob(ctx, form));
+    }
+
+    private Response doSubmitJob(RoutingContext ctx, RecordingFormData form) throws IOException {
+        FileUpload upload = form.file;
+        metrics.recordUpload(ctx, upload.size());
+        if (!ParseFilter.of(form).isEmpty()) {
+            throw new BadRequestException(
+                    "start, end, last and eventTypes are not supported for report jobs");
+        }
+
+        Ingested ingested = ingest(ctx, upload, cache.isEnabled());
+        String cacheKey =
+                ingested.digest() == null ? null : ReportCache.key(ingested.digest(), form.filter);
+        if (cacheKey != null) {
+            Optional<String> cached = cache.get(cacheKey);
+            if (cached.isPresent()) {
+                logger.infof("Cache hit for %s (%s)", upload.fileName(), cacheKey);
+                discard(ingested, upload);
+                return jobAccepted(jobs.completed(upload.fileName(), cached.get()));
+            }
+        }
+
+        if (executor.isSaturated()) {
+            discard(ingested, upload);
+            throw new ServiceUnavailableException(Long.parseLong(retryAfterSeconds));
+        }
+
+        UploadedRecording recording = admit(ingested, upload);
+        try {
+            recording = retainUpload(recording, upload);
+        } catch (IOException | RuntimeException e) {
+            recording.reservation().close();
+            fs.deleteIfExists(recording.file());
+            throw e;
+        }
+        ReportJob job =
+                jobs.submit(recording, upload.fileName(), rfp.parse(form.filter), cacheKey);
+        return jobAccepted(job);
+    }
+
+    @Path("report/jobs")
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<ReportJob.JobStatus> listJobs() {
+        return jobs.list().stream().map(ReportJob::toStatus).toList();
+    }
+
+    @Path("report/jobs/{id}")
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public ReportJob.JobStatus getJob(@PathParam("id") String id) {
+        return jobs.get(id).orElseThrow(NotFoundException::new).toStatus();
+    }
+
+    @Path("report/jobs/{id}/result")
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getJobResult(@PathParam("id") String id) {
+        ReportJob job = jobs.get(id).orElseThrow(NotFoundException::new);
+        switch (job.getStatus()) {
+            case COMPLETED:
+                return Response.ok(job.getResult()).build();
+            case FAILED:
+                return Response.serverError().entity(job.toStatus()).build();
+            case CANCELLED:
+                return Response.status(Response.Status.GONE).entity(job.toStatus()).build();
+            default:
+                return Response.accepted(job.toStatus()).build();
+        }
+    }
+
+    @Path("report/jobs/{id}")
+    @DELETE
+    public void deleteJob(@PathParam("id") String id) {
+        jobs.delete(id).orElseThrow(NotFoundException::new);
+    }
+
+    private Response jobAccepted(ReportJob job) {
+        return Response.accepted(job.toStatus())
+                .location(URI.create("report/jobs/" + job.getId()))
+                .build();
+    }
+
+    /**
+     * The HTTP layer deletes uploaded files when the request ends, so recordings that must outlive
+     * the request are moved out of its way.
+     */
+    private UploadedRecording retainUpload(UploadedRecording recording, FileUpload upload)
+            throws IOException {
+        if (!recording.file().equals(upload.uploadedFile())) {
+            return recording;
+        }
+        java.nio.file.Path tmp = Files.createTempFile(null, null);
+        Files.move(recording.file(), tmp, StandardCopyOption.REPLACE_EXISTING);
+        return recording.withFile(tmp);
+    }
+
+    /**
+     * An upload which has been decompressed if need be and validated, but not yet admitted.
+     *
+     * @param exact whether the size is exact, rather than a lower bound of the decompressed size
+     *     of an upload that is decompressed on the fly
+     * @param digest the SHA-256 digest of the upload as it was received, if one was asked for
+     */
+    private record Ingested(
+            java.nio.file.Path file,
+            boolean compressed,
+            long size,
+            boolean exact,
+            String digest,
+            long start,
+            Cancellation cancellation) {}
+
+    /** Decompress and admit an upload, see {@link #ingest} and {@link #admit}. */
+    private UploadedRecording handleUpload(RoutingContext ctx, FileUpload upload)
+            throws IOException {
+        return admit(ingest(ctx, upload, false), upload);
+    }
+
+    /**
+     * Decompress and validate an upload. The returned {@link Cancellation} is cancelled when the
+     * client disconnects, when the request's deadline passes or when the request ends, so that
+     * every later stage of the request can stop early. It is already observed here, so that a
+     * request abandoned while its upload is being decompressed does not finish the copy.
+     *
+     * <p>The digest, if asked for, is computed from the same read of the upload as the rest of
+     * the work done here: a compressed upload is digested as it is decompressed, and an
+     * uncompressed one as its chunk headers are validated, so that no separate pass over the
+     * upload is needed for it.
+     */
+    private Ingested ingest(RoutingContext ctx, FileUpload upload, boolean digest)
             throws IOException {
         java.nio.file.Path file = upload.uploadedFile();
         long timeout = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(timeoutMs));
         long start = System.nanoTime();
-        long now = start;
-        long elapsed = 0;
+        boolean compressed = false;
+        boolean mapped = Boolean.parseBoolean(mappedIngest);
+        long size = upload.size();
+        boolean exact = true;
+        MessageDigest md = digest ? Digests.newDigest() : null;
+        String hex = null;
+        Cancellation cancellation = cancellation(ctx, timeout);
 
         logger.infof("Received request for %s (%d bytes)", upload.fileName(), upload.size());
 
-        if (IOToolkit.isCompressedFile(file.toFile())) {
-            file = decompress(file);
-            now = System.nanoTime();
-            elapsed = now - start;
-            logger.infof(
-                    "%s was compressed. Decompressed size: %d bytes. Decompression took %dms",
-                    upload.fileName(),
-                    file.toFile().length(),
-                    TimeUnit.NANOSECONDS.toMillis(elapsed));
+        try {
+            if (IOToolkit.isCompressedFile(file.toFile())) {
+                // rejects uploads that are not recordings before decompressing all of them
+                JfrValidator.validate(file, true);
+                if (Boolean.parseBoolean(streamingDecompression)) {
+                    compressed = true;
+                    Compression.Size uncompressed = Compression.uncompressedSize(file);
+                    size = uncompressed.bytes();
+                    exact = uncompressed.exact();
+                    if (digest) {
+                        // the upload is not decompressed until it is parsed, after the caches have
+                        // been consulted, so its compressed bytes are read for the digest alone
+                        hex = Digests.sha256(file, mapped);
+                    }
+                } else {
+                    file = decompress(file, md, cancellation);
+                    size = file.toFile().length();
+                    hex = digest ? Digests.toHex(md) : null;
+                }
+                long elapsed = System.nanoTime() - start;
+                metrics.recordStage(ReportMetrics.STAGE_DECOMPRESSION, elapsed);
+                if (exact) {
+                    metrics.recordDecompressedSize(size);
+                }
+                logger.infof(
+                        "%s was compressed. Decompressed size: %s%d bytes. Decompression took %dms",
+                        upload.fileName(),
+                        exact ? "" : "at least ",
+                        size,
+                        TimeUnit.NANOSECONDS.toMillis(elapsed));
+            }
+            if (!compressed) {
+                long validationStart = System.nanoTime();
+                if (digest && hex == null) {
+                    // reads every chunk rather than only the headers, in place of the digest pass
+                    try (InputStream stream =
+                            new DigestInputStream(
+                                    cancellation.guard(
+                                            mapped
+                                                    ? new MappedFileInputStream(file)
+                                                    : Files.newInputStream(file)),
+                                    md)) {
+                        JfrValidator.validate(stream, size);
+                    }
+                    hex = Digests.toHex(md);
+                } else {
+                    JfrValidator.validate(file);
+                }
+                metrics.recordStage(
+                        ReportMetrics.STAGE_VALIDATION, System.nanoTime() - validationStart);
+            }
+            cancellation.throwIfCancelled();
+            return new Ingested(file, compressed, size, exact, hex, start, cancellation);
+        } catch (InterruptedIOException e) {
+            releaseUpload(null, file, upload, cancellation);
+            cancellation.throwIfCancelled();
+            throw new InternalServerErrorException(e);
+        } catch (IOException | RuntimeException e) {
+            releaseUpload(null, file, upload, cancellation);
+            throw e;
         }
+    }
 
-        Runtime runtime = Runtime.getRuntime();
-        System.gc();
-        long availableMemory = runtime.maxMemory() - runtime.totalMemory() + runtime.freeMemory();
-        long maxHandleableSize = availableMemory / Long.parseLong(memoryFactor);
-        if (file.toFile().length() > maxHandleableSize) {
-            throw new ClientErrorException(Response.Status.REQUEST_ENTITY_TOO_LARGE);
-        }
+    /**
+     * Reserve the heap an ingested upload is estimated to need, waiting for other reports to
+     * release theirs if need be. Recordings too large to be parsed at once are degraded to
+     * analysis in passes instead. If only a lower bound of the decompressed size is known, the
+     * reservation is grown as the recording turns out to be larger while it is parsed, see {@link
+     * UploadedRecording#measured}.
+     */
+    private UploadedRecording admit(Ingested ingested, FileUpload upload) throws IOException {
+        java.nio.file.Path file = ingested.file();
+        Cancellation cancellation = ingested.cancellation();
+        long timeout = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(timeoutMs));
+        long start = ingested.start();
+        long elapsed = System.nanoTime() - start;
+
+        AdmissionController.Reservation reservation = null;
+        boolean degraded = false;
+        try {
+            long admissionStart = System.nanoTime();
+            try (var section = cancellation.interruptible()) {
+                long cost = estimator.estimate(file, ingested.compressed(), ingested.size());
+                degraded = largeRecordings.isOversized(cost);
+                if (degraded) {
+                    logger.infof(
+                            "%s is estimated to need %dM of heap, analyzing it in passes",
+                            upload.fileName(), cost / (1024 * 1024));
+                    cost = largeRecordings.workingSet();
+                }
+                reservation = admission.reserve(cost, timeout - elapsed);
+            } finally {
+                metrics.recordStage(
+                        ReportMetrics.STAGE_ADMISSION, System.nanoTime() - admissionStart);
+            }
 
-        now = System.nanoTime();
-        elapsed = now - start;
-        if (elapsed > timeout) {
-            throw new ServerErrorException(Response.Status.GATEWAY_TIMEOUT);
+            elapsed = System.nanoTime() - start;
+            if (elapsed > timeout) {
+                throw new ServerErrorException(Response.Status.GATEWAY_TIMEOUT);
+            }
+            cancellation.throwIfCancelled();
+            UploadedRecording recording =
+                    new UploadedRecording(
+                            file,
+                            ingested.compressed(),
+                            Boolean.parseBoolean(mappedIngest),
+                            ingested.size(),
+                            start,
+                            elapsed,
+                            reservation,
+                            degraded,
+                            cancellation);
+            // degraded recordings are parsed in windows bounded by the working set instead
+            return ingested.exact() || degraded
+                    ? recording
+                    : recording.measured(bytes -> estimator.estimate(bytes, 1));
+        } catch (InterruptedException | InterruptedIOException e) {
+            releaseUpload(reservation, file, upload, cancellation);
+            cancellation.throwIfCancelled();
+            throw new InternalServerErrorException(e);
+        } catch (IOException | RuntimeException e) {
+            releaseUpload(reservation, file, upload, cancellation);
+            throw e;
         }
-        return Pair.of(file, Pair.of(start, elapsed));
     }
 
-    private void ctxHelper(RoutingContext ctx, Future<?> ff) {
+    /** Give up on an ingested upload without analyzing it, such as when its report is cached. */
+    private void discard(Ingested ingested, FileUpload upload) throws IOException {
+        releaseUpload(null, ingested.file(), upload, ingested.cancellation());
+    }
+
+    /**
+     * A cancellation for the request, which is cancelled once the request ends or fails, or once
+     * the timeout has elapsed.
+     */
+    private Cancellation cancellation(RoutingContext ctx, long timeoutNanos) {
+        Cancellation cancellation = new Cancellation();
+        long timer =
+                vertx.setTimer(
+                        Math.max(1, TimeUnit.NANOSECONDS.toMillis(timeoutNanos)),
+                        id -> cancellation.cancel(Cancellation.Reason.DEADLINE));
+        cancellation.onCancel(() -> vertx.cancelTimer(timer));
         ctx.response()
                 .exceptionHandler(
                         e -> {
                             logger.error(e);
-                            ff.cancel(true);
+                            cancellation.cancel(Cancellation.Reason.DISCONNECTED);
                         });
         ctx.request()
                 .exceptionHandler(
                         e -> {
                             logger.error(e);
-                            ff.cancel(true);
+                            cancellation.cancel(Cancellation.Reason.DISCONNECTED);
                         });
-        ctx.addEndHandler().onComplete(ar -> ff.cancel(true));
+        ctx.addEndHandler()
+                .onComplete(
+                        ar ->
+                                cancellation.cancel(
+                                        ar.succeeded()
+                                                ? Cancellation.Reason.COMPLETED
+                                                : Cancellation.Reason.DISCONNECTED));
+        return cancellation;
+    }
+
+    private void releaseUpload(
+            AdmissionController.Reservation reservation,
+            java.nio.file.Path file,
+            FileUpload upload,
+            Cancellation cancellation)
+            throws IOException {
+        cancellation.cancel(Cancellation.Reason.COMPLETED);
+        if (reservation != null) {
+            reservation.close();
+        }
+        if (!file.equals(upload.uploadedFile())) {
+            fs.deleteIfExists(file);
+        }
     }
 
-    private void cleanupHelper(
-            Future<?> future, java.nio.file.Path file, String fileName, long start)
+    private void ctxHelper(UploadedRecording recording, Future<?> ff) {
+        recording.cancellation().onCancel(() -> ff.cancel(true));
+    }
+
+    private void cleanupHelper(Future<?> future, UploadedRecording recording, String fileName)
             throws IOException {
         if (future != null) {
             future.cancel(true);
         }
+        recording.cancellation().cancel(Cancellation.Reason.COMPLETED);
+        recording.reservation().close();
+        java.nio.file.Path file = recording.file();
+        long start = recording.start();
         boolean deleted = fs.deleteIfExists(file);
         if (deleted) {
             logger.infof("Deleted %s", file);
@@ -190,11 +1097,27 @@ public class ReportResource {
                 fileName, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
     }
 
-    private java.nio.file.Path decompress(java.nio.file.Path file) throws IOException {
+    /**
+     * @param digest if not null, updated with every byte of the compressed file as it is read
+     */
+    private java.nio.file.Path decompress(
+            java.nio.file.Path file, MessageDigest digest, Cancellation cancellation)
+            throws IOException {
         java.nio.file.Path tmp = Files.createTempFile(null, null);
-        try (var stream = IOToolkit.openUncompressedStream(file.toFile())) {
+        InputStream in = Files.newInputStream(file);
+        InputStream raw = digest == null ? in : new DigestInputStream(in, digest);
+        try (raw;
+                var stream = cancellation.guard(IOToolkit.openUncompressedStream(raw))) {
             fs.copy(stream, tmp, StandardCopyOption.REPLACE_EXISTING);
+            // anything after the compressed data still counts towards the digest
+            raw.transferTo(OutputStream.nullOutputStream());
             return tmp;
+        } catch (ZipException | EOFException e) {
+            fs.deleteIfExists(tmp);
+            throw JfrValidator.corrupt(e);
+        } catch (IOException | RuntimeException e) {
+            fs.deleteIfExists(tmp);
+            throw e;
         } finally {
             fs.deleteIfExists(file);
         }
@@ -0,0 +1,180 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+
+/**
+ * Serializes reports with mappers and writers which are configured once and shared by all
+ * requests, rather than a new {@link ObjectMapper} per request. Reports are written to the
+ * response stream one entry at a time while the response is sent, either as JSON or, for clients
+ * which prefer it, as CBOR, so the encoded report is never held as a whole for the response. A
+ * client reading slowly holds back the request thread writing to it rather than letting encoded
+ * output pile up. Report caches always hold JSON, which is copied off the response as it is
+ * written.
+ */
+@ApplicationScoped
+public class ReportSerializer {
+
+    public static final String APPLICATION_CBOR = "application/cbor";
+    public static final MediaType APPLICATION_CBOR_TYPE = MediaType.valueOf(APPLICATION_CBOR);
+
+    private static final int INITIAL_BUFFER_SIZE = 16 * 1024;
+
+    public enum Format {
+        JSON(MediaType.APPLICATION_JSON_TYPE),
+        CBOR(APPLICATION_CBOR_TYPE);
+
+        private final MediaType mediaType;
+
+        Format(MediaType mediaType) {
+            this.mediaType = mediaType;
+        }
+
+        public MediaType mediaType() {
+            return mediaType;
+        }
+    }
+
+    @Inject ReportMetrics metrics;
+
+    private final ObjectMapper json = new ObjectMapper();
+    private final ObjectMapper cbor = new CBORMapper();
+    private final ObjectWriter jsonWriter = json.writer();
+    private final ObjectWriter cborWriter = cbor.writer();
+
+    /** The shared JSON mapper, for reading and for values other than whole reports. */
+    public ObjectMapper mapper() {
+        return json;
+    }
+
+    /** The format most preferred by the client, in order of its acceptable media types. */
+    public Format negotiate(List<MediaType> acceptable) {
+        for (MediaType type : acceptable) {
+            if (type.isWildcardType() || type.isCompatible(MediaType.APPLICATION_JSON_TYPE)) {
+                return Format.JSON;
+            }
+            if (type.isCompatible(APPLICATION_CBOR_TYPE)) {
+                return Format.CBOR;
+            }
+        }
+        return Format.JSON;
+    }
+
+    /**
+     * Respond with a report written to the response stream entry by entry, flushing after each, as
+     * the response is sent.
+     *
+     * @param copy if not null, receives the report as JSON once it has been written in full
+     */
+    public Response respond(Format format, Map<String, ?> report, Consumer<String> copy) {
+        StreamingOutput body =
+                out -> {
+                    long start = System.nanoTime();
+                    ByteArrayOutputStream copied = null;
+                    OutputStream target = out;
+                    if (copy != null && format == Format.JSON) {
+                        copied = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+                        target = new TeeOutputStream(out, copied);
+                    }
+                    write(format, report, target);
+                    // includes the time the client took to take the report off the stream
+                    metrics.recordStage(
+                            ReportMetrics.STAGE_SERIALIZATION, System.nanoTime() - start);
+                    if (copy != null) {
+                        copy.accept(
+                                copied != null
+                                        ? copied.toString(StandardCharsets.UTF_8)
+                                        : json.writeValueAsString(report));
+                    }
+                };
+        return Response.ok(body, format.mediaType()).build();
+    }
+
+    /** Respond with a report held as JSON, such as one from the cache. */
+    public Response respond(Format format, String json) throws IOException {
+        if (format == Format.JSON) {
+            return Response.ok(json, format.mediaType()).build();
+        }
+        Map<String, Object> report = this.json.readValue(json, new TypeReference<>() {});
+        return respond(format, report, null);
+    }
+
+    private void write(Format format, Map<String, ?> report, OutputStream out)
+            throws IOException {
+        ObjectMapper mapper = format == Format.CBOR ? cbor : json;
+        ObjectWriter writer = format == Format.CBOR ? cborWriter : jsonWriter;
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+            generator.writeStartObject();
+            for (Map.Entry<String, ?> entry : report.entrySet()) {
+                generator.writeFieldName(entry.getKey());
+                writer.writeValue(generator, entry.getValue());
+                // hand each entry to the client as soon as it is encoded
+                generator.flush();
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    private static class TeeOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final OutputStream copy;
+
+        TeeOutputStream(OutputStream out, OutputStream copy) {
+            this.out = out;
+            this.copy = copy;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            copy.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            copy.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+/**
+ * Runs the blocking part of report requests - receiving, decompressing and admitting the upload,
+ * then waiting for its analysis - off the event loop. In {@code worker} mode this is the Quarkus
+ * worker pool, which bounds the number of requests that can wait at once. In {@code virtual} mode
+ * each request gets a virtual thread of its own, so that waiting requests only cost their stacks.
+ * Virtual threads need Java 21, and the service fails to start if they are requested on an older
+ * runtime. Analysis itself always runs on the bounded {@link AnalysisExecutor}.
+ */
+@ApplicationScoped
+public class RequestThreads {
+
+    static final String WORKER = "worker";
+    static final String VIRTUAL = "virtual";
+
+    @ConfigProperty(name = "io.cryostat.reports.request.threads", defaultValue = WORKER)
+    String mode;
+
+    private final Logger logger = Logger.getLogger(RequestThreads.class);
+
+    private ExecutorService virtualThreads;
+
+    void onStart(@Observes StartupEvent ev) {
+        if (VIRTUAL.equalsIgnoreCase(mode)) {
+            virtualThreads = newVirtualThreadPerTaskExecutor();
+        } else if (!WORKER.equalsIgnoreCase(mode)) {
+            throw new IllegalStateException(
+                    String.format(
+                            "Unknown request thread mode %s, expected %s or %s",
+                            mode, WORKER, VIRTUAL));
+        }
+        logger.infof("Request threads: %s", virtualThreads == null ? WORKER : VIRTUAL);
+    }
+
+    void onStop(@Observes ShutdownEvent ev) {
+        if (virtualThreads != null) {
+            virtualThreads.shutdownNow();
+        }
+    }
+
+    public boolean isVirtual() {
+        return virtualThreads != null;
+    }
+
+    /** Run a blocking task on a request thread, completing the returned Uni with its result. */
+    public <T> Uni<T> run(Callable<T> task) {
+        return Uni.createFrom()
+                .<T>emitter(
+                        emitter -> {
+                            try {
+                                emitter.complete(task.call());
+                            } catch (Exception e) {
+                                emitter.fail(e);
+                            }
+                        })
+                .runSubscriptionOn(executor());
+    }
+
+    private Executor executor() {
+        return virtualThreads != null ? virtualThreads : Infrastructure.getDefaultWorkerPool();
+    }
+
+    /** Looked up reflectively, as the service is still built for Java 17. */
+    private ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService)
+                    Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            throw new IllegalStateException(
+                    String.format(
+                            "Virtual request threads are not available on Java %s, set %s to %s",
+                            Runtime.version().feature(),
+                            "io.cryostat.reports.request.threads",
+                            WORKER),
+                    e);
+        }
+    }
+}
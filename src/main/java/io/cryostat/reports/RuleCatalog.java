@@ -0,0 +1,95 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmc.flightrecorder.rules.DependsOn;
+import org.openjdk.jmc.flightrecorder.rules.IRule;
+import org.openjdk.jmc.flightrecorder.rules.RuleRegistry;
+
+/**
+ * The registered rules and the metadata derived from them, computed once when this class is
+ * initialized. Native images built with the {@code native-init} profile initialize this class,
+ * and the JMC rules it holds, at build time, so that rule discovery is not paid for by the first
+ * request after startup.
+ */
+public final class RuleCatalog {
+
+    private static final List<IRule> RULES = List.copyOf(RuleRegistry.getRules());
+    private static final Map<Class<?>, IRule> BY_TYPE =
+            RULES.stream()
+                    .collect(Collectors.toMap(Object::getClass, Function.identity(), (a, b) -> a));
+    private static final Map<IRule, IRule> DEPENDENCIES =
+            RULES.stream()
+                    .filter(rule -> dependency(rule) != null)
+                    .collect(Collectors.toMap(Function.identity(), RuleCatalog::dependency));
+    private static final Map<IRule, Set<String>> REQUIRED_EVENT_TYPES =
+            RULES.stream()
+                    .collect(
+                            Collectors.toMap(
+                                    Function.identity(),
+                                    rule -> Set.copyOf(rule.getRequiredEvents().keySet())));
+
+    private RuleCatalog() {}
+
+    public static List<IRule> rules() {
+        return RULES;
+    }
+
+    /** The registered rule of the given type, or null if there is none. */
+    public static IRule ofType(Class<?> type) {
+        return BY_TYPE.get(type);
+    }
+
+    /** The registered rule that the given rule depends on, or null if there is none. */
+    public static IRule dependencyOf(IRule rule) {
+        return REQUIRED_EVENT_TYPES.containsKey(rule) ? DEPENDENCIES.get(rule) : dependency(rule);
+    }
+
+    /** The event types required by the given rules and by the rules they depend on. */
+    public static Set<String> requiredEventTypes(Collection<IRule> rules) {
+        Set<String> types = new HashSet<>();
+        Deque<IRule> pending = new ArrayDeque<>(rules);
+        Set<IRule> seen = new HashSet<>();
+        while (!pending.isEmpty()) {
+            IRule rule = pending.pop();
+            if (!seen.add(rule)) {
+                continue;
+            }
+            Set<String> required = REQUIRED_EVENT_TYPES.get(rule);
+            types.addAll(required != null ? required : rule.getRequiredEvents().keySet());
+            IRule dependency = dependencyOf(rule);
+            if (dependency != null) {
+                pending.push(dependency);
+            }
+        }
+        return types;
+    }
+
+    private static IRule dependency(IRule rule) {
+        DependsOn dependsOn = rule.getClass().getAnnotation(DependsOn.class);
+        return dependsOn == null ? null : BY_TYPE.get(dependsOn.value());
+    }
+}
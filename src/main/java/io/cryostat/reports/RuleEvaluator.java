@@ -0,0 +1,238 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.common.item.IItemIterable;
+import org.openjdk.jmc.common.item.ItemFilters;
+import org.openjdk.jmc.common.util.IPreferenceValueProvider;
+import org.openjdk.jmc.flightrecorder.rules.DependsOn;
+import org.openjdk.jmc.flightrecorder.rules.IResult;
+import org.openjdk.jmc.flightrecorder.rules.IResultValueProvider;
+import org.openjdk.jmc.flightrecorder.rules.IRule;
+import org.openjdk.jmc.flightrecorder.rules.TypedResult;
+import org.openjdk.jmc.flightrecorder.rules.util.RulesToolkit;
+
+/**
+ * Evaluates rules against a parsed recording one at a time, so that each rule's result can be
+ * handed off as soon as it is available, or concurrently when only the whole report is wanted.
+ * Rules are evaluated after the rules they depend on, which are evaluated as needed even if they
+ * were not themselves selected. The cost of each evaluation is measured and handed to an optional
+ * profile sink.
+ */
+public class RuleEvaluator {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final IItemCollection items;
+    private final Consumer<RuleProfile> profileSink;
+    private final Map<IRule, IResult> results = new ConcurrentHashMap<>();
+    private final Map<IRule, RuleResult> evaluated = new ConcurrentHashMap<>();
+    private final IResultValueProvider dependencyResults = new DependencyResults();
+
+    public RuleEvaluator(IItemCollection items) {
+        this(items, profile -> {});
+    }
+
+    public RuleEvaluator(IItemCollection items, Consumer<RuleProfile> profileSink) {
+        this.items = items;
+        this.profileSink = profileSink;
+    }
+
+    public static List<IRule> selectRules(Predicate<IRule> predicate) {
+        return RuleCatalog.rules().stream().filter(predicate).toList();
+    }
+
+    public void evaluate(Collection<IRule> rules, Consumer<RuleResult> sink)
+            throws InterruptedException {
+        evaluate(rules, rule -> {}, sink);
+    }
+
+    public void evaluate(
+            Collection<IRule> rules, Consumer<IRule> onStart, Consumer<RuleResult> sink)
+            throws InterruptedException {
+        for (IRule rule : rules) {
+            onStart.accept(rule);
+            sink.accept(evaluate(rule));
+        }
+    }
+
+    /**
+     * Evaluate the rules concurrently, on the calling thread helped by idle threads of the
+     * executor, as the report generator does. Rules are evaluated in phases, each phase after the
+     * one holding the rules its rules depend on, and dependencies which were not selected are
+     * evaluated in their phase without being handed to the sink. Results are handed to the sink
+     * one at a time, in no particular order.
+     */
+    public void evaluate(
+            Collection<IRule> rules,
+            AnalysisExecutor executor,
+            int parallelism,
+            Consumer<RuleResult> sink)
+            throws InterruptedException {
+        Map<IRule, Integer> phases = new LinkedHashMap<>();
+        rules.forEach(rule -> phase(rule, phases));
+        int last = phases.values().stream().mapToInt(Integer::intValue).max().orElse(-1);
+        Set<IRule> selected = Set.copyOf(rules);
+        for (int phase = 0; phase <= last; phase++) {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (Map.Entry<IRule, Integer> e : phases.entrySet()) {
+                IRule rule = e.getKey();
+                if (e.getValue() != phase) {
+                    continue;
+                }
+                tasks.add(
+                        () -> {
+                            RuleResult result = evaluate(rule);
+                            if (selected.contains(rule)) {
+                                synchronized (sink) {
+                                    sink.accept(result);
+                                }
+                            }
+                            return null;
+                        });
+            }
+            try {
+                executor.fork(tasks, parallelism);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof InterruptedException) {
+                    throw (InterruptedException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+        }
+    }
+
+    /** @return the phase of the rule, one after the phase of the rule it depends on, if any */
+    private static int phase(IRule rule, Map<IRule, Integer> phases) {
+        Integer known = phases.get(rule);
+        if (known != null) {
+            return known;
+        }
+        DependsOn dependsOn = rule.getClass().getAnnotation(DependsOn.class);
+        IRule dependency = dependsOn == null ? null : RuleCatalog.ofType(dependsOn.value());
+        int phase = dependency == null ? 0 : phase(dependency, phases) + 1;
+        phases.put(rule, phase);
+        return phase;
+    }
+
+    public RuleResult evaluate(IRule rule) throws InterruptedException {
+        RuleResult known = evaluated.get(rule);
+        if (known != null) {
+            return known;
+        }
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        DependsOn dependsOn = rule.getClass().getAnnotation(DependsOn.class);
+        IRule dependency = dependsOn == null ? null : RuleCatalog.ofType(dependsOn.value());
+        if (dependency != null) {
+            // evaluated up front so that its cost is not attributed to the dependent rule
+            evaluate(dependency);
+        }
+        long cpuStart = cpuTime();
+        long start = System.nanoTime();
+        RuleResult result = doEvaluate(rule, dependsOn, dependency);
+        long wall = System.nanoTime() - start;
+        long cpu = cpuStart < 0 ? -1 : cpuTime() - cpuStart;
+        result = result.withElapsed(TimeUnit.NANOSECONDS.toMillis(wall));
+        evaluated.put(rule, result);
+        profileSink.accept(RuleProfile.of(rule.getId(), wall, cpu, countEvents(rule)));
+        return result;
+    }
+
+    private RuleResult doEvaluate(IRule rule, DependsOn dependsOn, IRule dependency)
+            throws InterruptedException {
+        if (dependsOn != null) {
+            IResult dependencyResult = dependency == null ? null : results.get(dependency);
+            if (dependencyResult == null
+                    || dependencyResult.getSeverity().getLimit()
+                            < dependsOn.severity().getLimit()) {
+                return RuleResult.notApplicable(
+                        rule,
+                        String.format(
+                                "Not evaluated because the result of %s was below %s",
+                                dependsOn.value().getSimpleName(), dependsOn.severity()));
+            }
+        }
+        if (!RulesToolkit.matchesEventAvailabilityMap(items, rule.getRequiredEvents())) {
+            return RuleResult.notApplicable(
+                    rule, "The recording does not contain the events required by this rule");
+        }
+        RunnableFuture<IResult> future =
+                rule.createEvaluation(
+                        items, IPreferenceValueProvider.DEFAULT_VALUES, dependencyResults);
+        future.run();
+        try {
+            IResult result = future.get();
+            results.put(rule, result);
+            return RuleResult.of(result);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            return RuleResult.notApplicable(
+                    rule, String.format("Evaluation failed: %s", cause.getMessage()));
+        }
+    }
+
+    private long countEvents(IRule rule) {
+        Set<String> types = rule.getRequiredEvents().keySet();
+        if (types.isEmpty()) {
+            return 0;
+        }
+        long count = 0;
+        for (IItemIterable iterable : items.apply(ItemFilters.type(types))) {
+            count += iterable.getItemCount();
+        }
+        return count;
+    }
+
+    private static long cpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : -1;
+    }
+
+    private class DependencyResults implements IResultValueProvider {
+        @Override
+        public <T> T getResultValue(TypedResult<T> type) {
+            for (IResult result : results.values()) {
+                T value = result.getResult(type);
+                if (value != null) {
+                    return value;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * The cost of evaluating a single rule: the wall-clock and CPU time spent in the rule's own
+ * evaluation, excluding any rules it depends on, and the number of events of the types the rule
+ * requires. CPU time is omitted if the JVM does not support measuring it.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record RuleProfile(String id, double wallMs, Double cpuMs, long events) {
+
+    static RuleProfile of(String id, long wallNanos, long cpuNanos, long events) {
+        return new RuleProfile(
+                id, millis(wallNanos), cpuNanos < 0 ? null : millis(cpuNanos), events);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000d;
+    }
+}
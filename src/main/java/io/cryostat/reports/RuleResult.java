@@ -0,0 +1,137 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import java.util.Collection;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.openjdk.jmc.flightrecorder.rules.IRecordingSetting;
+import org.openjdk.jmc.flightrecorder.rules.IResult;
+import org.openjdk.jmc.flightrecorder.rules.IRule;
+import org.openjdk.jmc.flightrecorder.rules.ResultToolkit;
+import org.openjdk.jmc.flightrecorder.rules.Severity;
+
+/**
+ * The result of evaluating a single rule, serialized in the same shape as the entries of the map
+ * produced by {@code InterruptibleReportGenerator#generateEvalMapInterruptibly}, plus the rule ID
+ * so that results can be emitted individually, and the time spent evaluating the rule. A status is
+ * only included for rules whose evaluation did not finish, or only covered the end of the
+ * recording.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record RuleResult(
+        String id,
+        String name,
+        String topic,
+        double score,
+        Evaluation evaluation,
+        Status status,
+        Long elapsedMs) {
+
+    public enum Status {
+        TIMED_OUT,
+        WINDOWED
+    }
+
+    public static RuleResult of(IResult result) {
+        IRule rule = result.getRule();
+        Collection<IRecordingSetting> settings = result.suggestRecordingSettings();
+        List<Suggestion> suggestions =
+                settings == null
+                        ? List.of()
+                        : settings.stream()
+                                .map(
+                                        s ->
+                                                new Suggestion(
+                                                        s.getSettingFor(),
+                                                        s.getSettingName(),
+                                                        s.getSettingValue()))
+                                .toList();
+        return new RuleResult(
+                rule.getId(),
+                rule.getName(),
+                rule.getTopic(),
+                result.getSeverity().getLimit(),
+                new Evaluation(
+                        populate(result, result.getSummary()),
+                        populate(result, result.getExplanation()),
+                        populate(result, result.getSolution()),
+                        suggestions),
+                null,
+                null);
+    }
+
+    public static RuleResult notApplicable(IRule rule, String summary) {
+        return new RuleResult(
+                rule.getId(),
+                rule.getName(),
+                rule.getTopic(),
+                Severity.NA.getLimit(),
+                new Evaluation(summary, null, null, List.of()),
+                null,
+                null);
+    }
+
+    public static RuleResult timedOut(IRule rule, long elapsedMs) {
+        return new RuleResult(
+                rule.getId(),
+                rule.getName(),
+                rule.getTopic(),
+                Severity.NA.getLimit(),
+                new Evaluation(
+                        "Evaluation did not complete within the timeout", null, null, List.of()),
+                Status.TIMED_OUT,
+                elapsedMs);
+    }
+
+    public RuleResult withElapsed(long elapsedMs) {
+        return new RuleResult(id, name, topic, score, evaluation, status, elapsedMs);
+    }
+
+    public RuleResult withStatus(Status status) {
+        return new RuleResult(id, name, topic, score, evaluation, status, elapsedMs);
+    }
+
+    /**
+     * This result in the shape of an entry of a report from the generator. A windowed status is
+     * kept, as the result would otherwise be indistinguishable from one covering the whole
+     * recording.
+     */
+    public RuleResult asReportEntry() {
+        return new RuleResult(
+                null,
+                name,
+                topic,
+                score,
+                evaluation,
+                status == Status.WINDOWED ? status : null,
+                null);
+    }
+
+    private static String populate(IResult result, String message) {
+        if (message == null) {
+            return null;
+        }
+        return ResultToolkit.populateMessage(result, message, false);
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Evaluation(
+            String summary, String explanation, String solution, List<Suggestion> suggestions) {}
+
+    public record Suggestion(String name, String setting, String value) {}
+}
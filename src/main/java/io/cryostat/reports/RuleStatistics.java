@@ -0,0 +1,100 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Aggregates the cost of rule evaluations across requests. Besides lifetime totals, each rule
+ * keeps exponentially weighted moving averages so that recent behaviour is visible even after a
+ * long uptime.
+ */
+@ApplicationScoped
+public class RuleStatistics {
+
+    @ConfigProperty(name = "io.cryostat.reports.rules.stats.weight", defaultValue = "0.2")
+    String weight;
+
+    private final Map<String, Aggregate> aggregates = new ConcurrentHashMap<>();
+
+    public void record(RuleProfile profile) {
+        double alpha = Double.parseDouble(weight);
+        aggregates.computeIfAbsent(profile.id(), Aggregate::new).add(profile, alpha);
+    }
+
+    /** Per-rule aggregates, most expensive first by total wall time. */
+    public List<RuleStats> stats() {
+        return aggregates.values().stream()
+                .map(Aggregate::snapshot)
+                .sorted(Comparator.comparingDouble(RuleStats::totalWallMs).reversed())
+                .toList();
+    }
+
+    public record RuleStats(
+            String id,
+            long count,
+            double totalWallMs,
+            double maxWallMs,
+            double recentWallMs,
+            Double totalCpuMs,
+            Double recentCpuMs,
+            double recentEvents) {}
+
+    private static class Aggregate {
+        private final String id;
+        private long count;
+        private double totalWall;
+        private double maxWall;
+        private double recentWall;
+        private Double totalCpu;
+        private Double recentCpu;
+        private double recentEvents;
+
+        Aggregate(String id) {
+            this.id = id;
+        }
+
+        synchronized void add(RuleProfile profile, double alpha) {
+            count++;
+            totalWall += profile.wallMs();
+            maxWall = Math.max(maxWall, profile.wallMs());
+            recentWall = average(recentWall, profile.wallMs(), alpha);
+            recentEvents = average(recentEvents, profile.events(), alpha);
+            if (profile.cpuMs() != null) {
+                totalCpu = (totalCpu == null ? 0 : totalCpu) + profile.cpuMs();
+                recentCpu =
+                        recentCpu == null
+                                ? profile.cpuMs()
+                                : average(recentCpu, profile.cpuMs(), alpha);
+            }
+        }
+
+        private double average(double current, double sample, double alpha) {
+            return count == 1 ? sample : alpha * sample + (1 - alpha) * current;
+        }
+
+        synchronized RuleStats snapshot() {
+            return new RuleStats(
+                    id, count, totalWall, maxWall, recentWall, totalCpu, recentCpu, recentEvents);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.openjdk.jmc.flightrecorder.parser.IEventSinkFactory;
+import org.openjdk.jmc.flightrecorder.parser.IParserExtension;
+
+/**
+ * Applies a parser extension to stream loads made by the current thread. The JMC loader only
+ * accepts extensions alongside files, while streams are loaded with the extensions registered
+ * through the service loader. This extension is registered there, and delegates to whichever
+ * extensions the loading thread has put in scope, so that a range of a file can be parsed through a
+ * bounded stream with a {@link ParseFilterExtension} applied. The loader asks extensions for
+ * their sink factories on the thread which starts the load, so the scope only needs to cover
+ * that call. Loads made outside of a scope are unaffected.
+ */
+public class ScopedParserExtension implements IParserExtension {
+
+    private static final ThreadLocal<List<IParserExtension>> CURRENT = new ThreadLocal<>();
+
+    /** Run the load with the extensions applied, in order, to the streams it parses. */
+    public static <T> T with(List<IParserExtension> extensions, Callable<T> load)
+            throws Exception {
+        List<IParserExtension> previous = CURRENT.get();
+        CURRENT.set(extensions);
+        try {
+            return load.call();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    @Override
+    public IEventSinkFactory getEventSinkFactory(IEventSinkFactory subFactory) {
+        List<IParserExtension> extensions = CURRENT.get();
+        if (extensions == null) {
+            return subFactory;
+        }
+        IEventSinkFactory factory = subFactory;
+        for (int i = extensions.size() - 1; i >= 0; i--) {
+            factory = extensions.get(i).getEventSinkFactory(factory);
+        }
+        return factory;
+    }
+
+    public String getValueInterpretation(String eventTypeId, String fieldId) {
+        List<IParserExtension> extensions = CURRENT.get();
+        if (extensions == null) {
+            return null;
+        }
+        for (IParserExtension extension : extensions) {
+            String interpretation = extension.getValueInterpretation(eventTypeId, fieldId);
+            if (interpretation != null) {
+                return interpretation;
+            }
+        }
+        return null;
+    }
+}
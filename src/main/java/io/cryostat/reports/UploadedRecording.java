@@ -0,0 +1,215 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongUnaryOperator;
+import java.util.zip.GZIPInputStream;
+
+import org.openjdk.jmc.common.io.IOToolkit;
+
+/**
+ * A recording file received by the service and ready for analysis. If the recording is still
+ * compressed on disk then {@link #openStream()} decompresses it on the fly, and {@link #size()}
+ * reports the estimated decompressed size rather than the size of the file. Mapped recordings are
+ * read through a memory mapping of the file rather than through read buffers. Degraded recordings
+ * are too large to be parsed at once, and are analyzed in several passes by {@link
+ * LargeRecordings}. Streams opened on the recording fail once its {@link Cancellation} is
+ * cancelled.
+ */
+public class UploadedRecording {
+
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    private final Path file;
+    private final boolean compressed;
+    private final boolean mapped;
+    private final long size;
+    private final long start;
+    private final long elapsed;
+    private final AdmissionController.Reservation reservation;
+    private final boolean degraded;
+    private final Cancellation cancellation;
+    private final LongUnaryOperator costOf;
+    private final AtomicLong covered;
+
+    UploadedRecording(
+            Path file,
+            boolean compressed,
+            boolean mapped,
+            long size,
+            long start,
+            long elapsed,
+            AdmissionController.Reservation reservation,
+            boolean degraded,
+            Cancellation cancellation) {
+        this(
+                file,
+                compressed,
+                mapped,
+                size,
+                start,
+                elapsed,
+                reservation,
+                degraded,
+                cancellation,
+                null);
+    }
+
+    private UploadedRecording(
+            Path file,
+            boolean compressed,
+            boolean mapped,
+            long size,
+            long start,
+            long elapsed,
+            AdmissionController.Reservation reservation,
+            boolean degraded,
+            Cancellation cancellation,
+            LongUnaryOperator costOf) {
+        this.file = file;
+        this.compressed = compressed;
+        this.mapped = mapped;
+        this.size = size;
+        this.start = start;
+        this.elapsed = elapsed;
+        this.reservation = reservation;
+        this.degraded = degraded;
+        this.cancellation = cancellation;
+        this.costOf = costOf;
+        this.covered = new AtomicLong(size);
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    public boolean compressed() {
+        return compressed;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public long start() {
+        return start;
+    }
+
+    public long elapsed() {
+        return elapsed;
+    }
+
+    public AdmissionController.Reservation reservation() {
+        return reservation;
+    }
+
+    public boolean degraded() {
+        return degraded;
+    }
+
+    public Cancellation cancellation() {
+        return cancellation;
+    }
+
+    UploadedRecording withFile(Path file) {
+        return new UploadedRecording(
+                file,
+                compressed,
+                mapped,
+                size,
+                start,
+                elapsed,
+                reservation,
+                degraded,
+                cancellation,
+                costOf);
+    }
+
+    UploadedRecording withCancellation(Cancellation cancellation) {
+        return new UploadedRecording(
+                file,
+                compressed,
+                mapped,
+                size,
+                start,
+                elapsed,
+                reservation,
+                degraded,
+                cancellation,
+                costOf);
+    }
+
+    /**
+     * A copy of this recording whose size is only a lower bound, such as a recording decompressed
+     * on the fly whose trailer does not tell its decompressed size. Streams opened on the copy
+     * count the decompressed bytes read from them, and once the count passes the size the
+     * reservation covers, the reservation is grown to the cost of a quarter more than that count.
+     * If the budget cannot cover it the recording is cancelled with {@link
+     * Cancellation.Reason#OVER_BUDGET}, so the recording is only decompressed once either way.
+     *
+     * @param costOf the heap cost of analyzing the given number of decompressed bytes
+     */
+    UploadedRecording measured(LongUnaryOperator costOf) {
+        return new UploadedRecording(
+                file,
+                compressed,
+                mapped,
+                size,
+                start,
+                elapsed,
+                reservation,
+                degraded,
+                cancellation,
+                costOf);
+    }
+
+    public InputStream openStream() throws IOException {
+        InputStream stream = cancellation.guard(openUnguardedStream());
+        return costOf == null ? stream : new CountingInputStream(stream, this::cover);
+    }
+
+    private void cover(long count) {
+        long limit = covered.get();
+        if (count <= limit) {
+            return;
+        }
+        long next = count + count / 4;
+        if (covered.compareAndSet(limit, next) && !reservation.grow(costOf.applyAsLong(next))) {
+            cancellation.cancel(Cancellation.Reason.OVER_BUDGET);
+        }
+    }
+
+    private InputStream openUnguardedStream() throws IOException {
+        if (!mapped) {
+            if (compressed) {
+                return IOToolkit.openUncompressedStream(file.toFile());
+            }
+            return Files.newInputStream(file);
+        }
+        if (!compressed) {
+            return new MappedFileInputStream(file);
+        }
+        if (Compression.isGzip(file)) {
+            return new GZIPInputStream(new MappedFileInputStream(file), GZIP_BUFFER_SIZE);
+        }
+        return IOToolkit.openUncompressedStream(file.toFile());
+    }
+}
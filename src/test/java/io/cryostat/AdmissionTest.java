@@ -0,0 +1,97 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat;
+
+import static io.restassured.RestAssured.given;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import io.cryostat.reports.AdmissionController;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.TestProfile;
+import jakarta.inject.Inject;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+
+@QuarkusTest
+@TestProfile(AdmissionTest.Profile.class)
+public class AdmissionTest {
+
+    private static final long BUDGET = 10L * 1024 * 1024;
+    private static final long COST = 6L * 1024 * 1024;
+
+    public static class Profile extends CachesDisabledProfile {
+        @Override
+        protected Map<String, String> overrides() {
+            // a budget smaller than the sample recording's estimated cost, which is not diverted
+            // to multi-pass analysis
+            return Map.of(
+                    "io.cryostat.reports.admission.budget", String.valueOf(BUDGET),
+                    "io.cryostat.reports.admission.max-wait", "10000",
+                    "io.cryostat.reports.memory-factor", "10",
+                    "io.cryostat.reports.estimator.enabled", "false",
+                    "io.cryostat.reports.large-recording.enabled", "false");
+        }
+    }
+
+    @Inject AdmissionController admission;
+
+    @Test
+    public void testUploadOverBudgetIsTooLarge() throws Exception {
+        given().contentType("multipart/form-data")
+                .multiPart("file", Recordings.sample())
+                .when()
+                .post("/report")
+                .then()
+                .statusCode(413);
+    }
+
+    @Test
+    public void testQueuedRequestIsAdmittedOnRelease() throws Exception {
+        AdmissionController.Reservation first =
+                admission.reserve(COST, TimeUnit.SECONDS.toNanos(10));
+        CompletableFuture<AdmissionController.Reservation> second =
+                CompletableFuture.supplyAsync(
+                        () -> {
+                            try {
+                                return admission.reserve(COST, TimeUnit.SECONDS.toNanos(10));
+                            } catch (InterruptedException e) {
+                                throw new IllegalStateException(e);
+                            }
+                        });
+        try {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (admission.stats().waiting() == 0 && System.nanoTime() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            // both reservations together exceed the budget, so the second waits for the first
+            MatcherAssert.assertThat(admission.stats().waiting(), Matchers.equalTo(1));
+            MatcherAssert.assertThat(second.isDone(), Matchers.is(false));
+
+            first.close();
+            AdmissionController.Reservation admitted = second.get(5, TimeUnit.SECONDS);
+            MatcherAssert.assertThat(admitted.cost(), Matchers.equalTo(COST));
+            admitted.close();
+        } finally {
+            first.close();
+        }
+        MatcherAssert.assertThat(admission.stats().inFlight(), Matchers.equalTo(0));
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat;
+
+import static io.restassured.RestAssured.given;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+
+@QuarkusTest
+@TestProfile(ArchiveLimitTest.Profile.class)
+public class ArchiveLimitTest {
+
+    public static class Profile implements QuarkusTestProfile {
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            // room for the sample recording once, but not twice
+            return Map.of("io.cryostat.reports.batch.max-expanded-bytes", "3000000");
+        }
+    }
+
+    @Test
+    public void testArchiveWithinLimitIsExpanded() throws Exception {
+        given().contentType("multipart/form-data")
+                .accept("application/x-ndjson")
+                .multiPart("file", zip(1))
+                .when()
+                .post("/report/batch")
+                .then()
+                .statusCode(200)
+                .body(Matchers.containsString("\"status\":200"));
+    }
+
+    @Test
+    public void testArchiveBeyondLimitIsTooLarge() throws Exception {
+        given().contentType("multipart/form-data")
+                .accept("application/x-ndjson")
+                .multiPart("file", zip(2))
+                .when()
+                .post("/report/batch")
+                .then()
+                .statusCode(413);
+    }
+
+    private File zip(int copies) throws Exception {
+        byte[] sample = Recordings.sampleBytes();
+        File zip = Recordings.file("archive", ".zip");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            for (int i = 0; i < copies; i++) {
+                out.putNextEntry(new ZipEntry("sample-" + i + ".jfr"));
+                out.write(sample);
+                out.closeEntry();
+            }
+        }
+        return zip;
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import io.quarkus.test.junit.QuarkusTestProfile;
+
+/**
+ * Turns off the report and parsed-recording caches, so that every request is analyzed from
+ * scratch. Profiles which need further overrides extend this one.
+ */
+public class CachesDisabledProfile implements QuarkusTestProfile {
+
+    @Override
+    public Map<String, String> getConfigOverrides() {
+        Map<String, String> overrides = new HashMap<>();
+        overrides.put("io.cryostat.reports.cache.max-bytes", "0");
+        overrides.put("io.cryostat.reports.parsed-cache.max-bytes", "0");
+        overrides.putAll(overrides());
+        return overrides;
+    }
+
+    protected Map<String, String> overrides() {
+        return Map.of();
+    }
+}
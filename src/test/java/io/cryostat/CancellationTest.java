@@ -0,0 +1,128 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat;
+
+import static io.restassured.RestAssured.given;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import io.quarkus.test.common.http.TestHTTPResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.TestProfile;
+import io.restassured.path.json.JsonPath;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+
+@QuarkusTest
+@TestProfile(CancellationTest.Profile.class)
+public class CancellationTest {
+
+    private static final int COPIES = 16;
+    private static final long RELEASE_LIMIT_MS = 5000;
+
+    public static class Profile extends CachesDisabledProfile {}
+
+    @TestHTTPResource("/report")
+    URL report;
+
+    @Test
+    public void testDisconnectReleasesCapacityPromptly()
+            throws IOException, InterruptedException {
+        Path gz = Files.createTempFile(Paths.get("target"), "cancellation-", ".jfr.gz");
+        try {
+            // concatenated recordings are valid multi-chunk recordings
+            byte[] chunk = Recordings.sampleBytes();
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(gz))) {
+                for (int i = 0; i < COPIES; i++) {
+                    out.write(chunk);
+                }
+            }
+            long tempFiles = countTempFiles();
+
+            try (Socket socket = new Socket(report.getHost(), report.getPort())) {
+                postMultipart(socket.getOutputStream(), gz);
+                // give the server time to start decompressing and analysing
+                TimeUnit.MILLISECONDS.sleep(500);
+            }
+            long disconnected = System.nanoTime();
+
+            long elapsedMs;
+            while (true) {
+                JsonPath stats =
+                        given().when().get("/stats").then().statusCode(200).extract().jsonPath();
+                elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - disconnected);
+                boolean released =
+                        stats.getInt("executor.active") == 0
+                                && stats.getInt("admission.inFlight") == 0
+                                && countTempFiles() <= tempFiles;
+                if (released || elapsedMs > RELEASE_LIMIT_MS) {
+                    break;
+                }
+                TimeUnit.MILLISECONDS.sleep(50);
+            }
+            MatcherAssert.assertThat(elapsedMs, Matchers.lessThanOrEqualTo(RELEASE_LIMIT_MS));
+        } finally {
+            Files.deleteIfExists(gz);
+        }
+    }
+
+    private void postMultipart(OutputStream out, Path file) throws IOException {
+        String boundary = "cancellation-test-boundary";
+        byte[] head =
+                String.format(
+                                "--%s\r\n"
+                                        + "Content-Disposition: form-data; name=\"file\";"
+                                        + " filename=\"%s\"\r\n"
+                                        + "Content-Type: application/octet-stream\r\n\r\n",
+                                boundary, file.getFileName())
+                        .getBytes(StandardCharsets.US_ASCII);
+        byte[] tail = String.format("\r\n--%s--\r\n", boundary).getBytes(StandardCharsets.US_ASCII);
+        long length = head.length + Files.size(file) + tail.length;
+        out.write(
+                String.format(
+                                "POST %s HTTP/1.1\r\n"
+                                        + "Host: %s:%d\r\n"
+                                        + "Content-Type: multipart/form-data; boundary=%s\r\n"
+                                        + "Content-Length: %d\r\n\r\n",
+                                report.getPath(),
+                                report.getHost(),
+                                report.getPort(),
+                                boundary,
+                                length)
+                        .getBytes(StandardCharsets.US_ASCII));
+        out.write(head);
+        Files.copy(file, out);
+        out.write(tail);
+        out.flush();
+    }
+
+    private static long countTempFiles() throws IOException {
+        try (Stream<Path> files = Files.list(Paths.get(System.getProperty("java.io.tmpdir")))) {
+            return files.filter(p -> p.getFileName().toString().endsWith(".tmp")).count();
+        }
+    }
+}
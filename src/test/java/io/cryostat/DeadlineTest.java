@@ -0,0 +1,52 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat;
+
+import static io.restassured.RestAssured.given;
+
+import java.io.File;
+import java.util.Map;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.TestProfile;
+import org.junit.jupiter.api.Test;
+
+@QuarkusTest
+@TestProfile(DeadlineTest.Profile.class)
+public class DeadlineTest {
+
+    private static final int COPIES = 8;
+
+    public static class Profile extends CachesDisabledProfile {
+        @Override
+        protected Map<String, String> overrides() {
+            // short enough to expire while the generator is still parsing
+            return Map.of("io.cryostat.reports.timeout", "500");
+        }
+    }
+
+    @Test
+    public void testDeadlineDuringGenerationIsGatewayTimeout() throws Exception {
+        File jfr = Recordings.copies("deadline", COPIES);
+
+        given().contentType("multipart/form-data")
+                .multiPart("file", jfr)
+                .when()
+                .post("/report")
+                .then()
+                .statusCode(504);
+    }
+}
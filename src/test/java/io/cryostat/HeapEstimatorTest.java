@@ -0,0 +1,81 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat;
+
+import static io.restassured.RestAssured.given;
+
+import java.util.Map;
+
+import io.cryostat.reports.HeapEstimator;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import io.restassured.path.json.JsonPath;
+import jakarta.inject.Inject;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+
+@QuarkusTest
+@TestProfile(HeapEstimatorTest.Profile.class)
+public class HeapEstimatorTest {
+
+    private static final long SIZE = 64L * 1024 * 1024;
+    private static final long OVERHEAD = 1024 * 1024;
+
+    public static class Profile implements QuarkusTestProfile {
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of(
+                    "io.cryostat.reports.memory-factor", "10",
+                    "io.cryostat.reports.estimator.min-samples", "3",
+                    "io.cryostat.reports.estimator.margin", "1.5",
+                    "io.cryostat.reports.estimator.floor", "0.5",
+                    "io.cryostat.reports.estimator.chunk-overhead", String.valueOf(OVERHEAD));
+        }
+    }
+
+    @Inject HeapEstimator estimator;
+
+    @Test
+    public void testEstimateStaysWithinBounds() {
+        // uncalibrated, the configured factor applies
+        MatcherAssert.assertThat(estimator.estimate(SIZE, 1), Matchers.equalTo(SIZE * 10));
+
+        // samples shrunk by collections during the parse must not drag the factor below the floor
+        for (int i = 0; i < 10; i++) {
+            estimator.observe(SIZE, 1, SIZE / 10);
+        }
+        MatcherAssert.assertThat(
+                estimator.estimate(SIZE, 1), Matchers.greaterThanOrEqualTo(SIZE * 5 + OVERHEAD));
+
+        // realistic samples move the factor to the observed ratio times the margin
+        for (int i = 0; i < 30; i++) {
+            estimator.observe(SIZE, 1, SIZE * 8 + OVERHEAD);
+        }
+        long estimate = estimator.estimate(SIZE, 1);
+        MatcherAssert.assertThat(estimate, Matchers.greaterThanOrEqualTo(SIZE * 11 + OVERHEAD));
+        MatcherAssert.assertThat(estimate, Matchers.lessThanOrEqualTo(SIZE * 12 + OVERHEAD));
+
+        JsonPath stats = given().when().get("/stats").then().statusCode(200).extract().jsonPath();
+        MatcherAssert.assertThat(stats.getBoolean("estimator.calibrated"), Matchers.is(true));
+        MatcherAssert.assertThat(
+                stats.getDouble("estimator.configuredFactor"), Matchers.equalTo(10.0));
+        MatcherAssert.assertThat(
+                stats.getDouble("estimator.factor"), Matchers.greaterThanOrEqualTo(5.0));
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import io.cryostat.reports.InvalidRecordingException;
+import io.cryostat.reports.JfrValidator;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class JfrValidatorTest {
+
+    private static final int CHUNK_SIZE = 256;
+
+    @Test
+    public void testVersionZeroHeaderIsAccepted() throws Exception {
+        // JDK 7 and 8 write format version 0.9, whose header is laid out differently after the
+        // chunk size, so only the fields it shares with later versions are checked
+        Path file = chunk((short) 0, (short) 9);
+        try {
+            Assertions.assertDoesNotThrow(() -> JfrValidator.validate(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testUnknownMajorVersionIsRejected() throws Exception {
+        Path file = chunk((short) 3, (short) 0);
+        try {
+            InvalidRecordingException e =
+                    Assertions.assertThrows(
+                            InvalidRecordingException.class, () -> JfrValidator.validate(file));
+            MatcherAssert.assertThat(
+                    e.getMessage(),
+                    Matchers.containsString("unsupported format version 3.0"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static Path chunk(short major, short minor) throws Exception {
+        ByteBuffer buf = ByteBuffer.allocate(CHUNK_SIZE);
+        buf.putInt(0x464c5200).putShort(major).putShort(minor).putLong(CHUNK_SIZE);
+        Path file = Files.createTempFile("chunk", ".jfr");
+        Files.write(file, buf.array());
+        return file;
+    }
+}
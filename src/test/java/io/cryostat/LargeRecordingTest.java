@@ -0,0 +1,71 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat;
+
+import static io.restassured.RestAssured.given;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.util.Map;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.TestProfile;
+import io.restassured.http.ContentType;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmc.flightrecorder.rules.RuleRegistry;
+
+@QuarkusTest
+@TestProfile(LargeRecordingTest.Profile.class)
+public class LargeRecordingTest {
+
+    public static class Profile extends CachesDisabledProfile {
+        @Override
+        protected Map<String, String> overrides() {
+            // the sample recording is estimated to need more than this budget
+            return Map.of("io.cryostat.reports.admission.budget", "8388608");
+        }
+    }
+
+    @Test
+    public void testOversizedRecordingIsAnalyzedInPasses() throws URISyntaxException {
+        File jfr = Recordings.sample();
+
+        Map<String, Object> map =
+                given().contentType("multipart/form-data")
+                        .accept(ContentType.JSON)
+                        .multiPart("file", jfr)
+                        .when()
+                        .post("/report")
+                        .then()
+                        .statusCode(200)
+                        .extract()
+                        .jsonPath()
+                        .getMap("");
+
+        MatcherAssert.assertThat(map, Matchers.aMapWithSize(RuleRegistry.getRules().size()));
+        int inFlight =
+                given().when()
+                        .get("/stats")
+                        .then()
+                        .statusCode(200)
+                        .extract()
+                        .jsonPath()
+                        .getInt("admission.inFlight");
+        MatcherAssert.assertThat(inFlight, Matchers.equalTo(0));
+    }
+}
@@ -0,0 +1,329 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+import org.openjdk.jmc.flightrecorder.rules.IRule;
+import org.openjdk.jmc.flightrecorder.rules.RuleRegistry;
+
+/**
+ * Lists the classes to initialize while the native image is built, for the {@code native-init}
+ * profile, which runs this before packaging. Whatever a static initializer run at image build time
+ * computes is frozen into the image, so a class is only listed once its static initializer has been
+ * checked not to read the clock, random numbers, the environment or system properties, nor to
+ * start threads or touch files. The check follows the static initializer into the methods it calls
+ * and the initializers of the classes it causes to be initialized, within the JMC and Cryostat
+ * packages, and lists those classes too, since the image builder initializes them along with it.
+ * Calls through interfaces or overridden methods are followed to the declared method only.
+ *
+ * <p>The classes named on the command line must pass the check, or the build fails. Every class of
+ * the JMC rule implementation package is checked as well, and listed if it passes; the others are
+ * reported and left to be initialized at run time.
+ *
+ * <p>Usage: {@code NativeInitClasses <native-image.properties to write> <class>...}
+ */
+public final class NativeInitClasses {
+
+    private static final String RULES_PACKAGE = "org/openjdk/jmc/flightrecorder/rules/jdk/";
+    private static final List<String> SCOPE = List.of("org/openjdk/jmc/", "io/cryostat/");
+
+    /** Prefixes of the calls, as owner and method name, which make an initializer unsafe. */
+    private static final List<String> DENIED =
+            List.of(
+                    "java/lang/System.currentTimeMillis",
+                    "java/lang/System.nanoTime",
+                    "java/lang/System.getenv",
+                    "java/lang/System.getProperty",
+                    "java/lang/System.getProperties",
+                    "java/lang/Integer.getInteger",
+                    "java/lang/Long.getLong",
+                    "java/lang/Boolean.getBoolean",
+                    "java/lang/Math.random",
+                    "java/lang/Runtime.",
+                    "java/lang/Thread.",
+                    "java/lang/ProcessBuilder.",
+                    "java/util/Random.",
+                    "java/util/UUID.randomUUID",
+                    "java/util/Date.<init>",
+                    "java/util/Calendar.getInstance",
+                    "java/util/Timer.",
+                    "java/util/concurrent/ThreadLocalRandom.",
+                    "java/util/concurrent/Executors.",
+                    "java/security/SecureRandom.",
+                    "java/time/Clock.",
+                    "java/time/Instant.now",
+                    "java/time/LocalDate.now",
+                    "java/time/LocalDateTime.now",
+                    "java/time/ZonedDateTime.now",
+                    "java/time/ZoneId.systemDefault",
+                    "java/util/TimeZone.getDefault",
+                    "java/util/Locale.getDefault",
+                    "java/io/File",
+                    "java/nio/file/");
+
+    private final Map<String, ClassNode> classes = new HashMap<>();
+    private final Map<String, Initializer> initializers = new HashMap<>();
+
+    /**
+     * What running a class's static initializer does, within scope.
+     *
+     * @param unsafe the reason it is unsafe in itself, or null
+     * @param initialized the other classes whose initialization it causes
+     */
+    private record Initializer(String unsafe, Set<String> initialized) {}
+
+    /** One method's calls and the classes whose initialization it causes directly. */
+    private record Method(String unsafe, Set<String> initialized, Set<String> calls) {}
+
+    private NativeInitClasses() {}
+
+    public static void main(String[] args) throws IOException, URISyntaxException {
+        Path output = Paths.get(args[0]);
+        NativeInitClasses checker = new NativeInitClasses();
+        Set<String> named = new TreeSet<>();
+        for (int i = 1; i < args.length; i++) {
+            named.add(args[i].replace('.', '/'));
+        }
+        Set<String> roots = new TreeSet<>(named);
+        roots.addAll(rulePackageClasses());
+        Map<String, String> reasons = checker.check(roots);
+
+        for (String name : named) {
+            if (reasons.containsKey(name)) {
+                throw new IllegalStateException(
+                        name.replace('/', '.')
+                                + " cannot be initialized at image build time: "
+                                + reasons.get(name));
+            }
+        }
+        for (String name : roots) {
+            if (reasons.containsKey(name)) {
+                System.out.printf(
+                        "Leaving %s to run time: %s%n", name.replace('/', '.'), reasons.get(name));
+            }
+        }
+
+        Set<String> safe = new TreeSet<>();
+        for (String name : checker.initializers.keySet()) {
+            if (!reasons.containsKey(name)) {
+                safe.add(name.replace('/', '.'));
+            }
+        }
+        Files.createDirectories(output.getParent());
+        Files.writeString(
+                output,
+                "Args = --initialize-at-build-time=" + String.join(",\\\n    ", safe) + "\n",
+                StandardCharsets.UTF_8);
+        System.out.printf("Listed %d classes for image build time initialization%n", safe.size());
+    }
+
+    /**
+     * Check the classes and every class their initialization causes to be initialized.
+     *
+     * @return the reason each unsafe class is unsafe
+     */
+    private Map<String, String> check(Set<String> roots) {
+        Deque<String> pending = new ArrayDeque<>(roots);
+        while (!pending.isEmpty()) {
+            String name = pending.pop();
+            if (!initializers.containsKey(name)) {
+                Initializer initializer = initializer(name);
+                initializers.put(name, initializer);
+                pending.addAll(initializer.initialized());
+            }
+        }
+
+        Map<String, String> reasons = new HashMap<>();
+        initializers.forEach(
+                (name, initializer) -> {
+                    if (initializer.unsafe() != null) {
+                        reasons.put(name, initializer.unsafe());
+                    }
+                });
+        // a class is also unsafe if it causes an unsafe class to be initialized
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Map.Entry<String, Initializer> entry : initializers.entrySet()) {
+                if (reasons.containsKey(entry.getKey())) {
+                    continue;
+                }
+                for (String other : entry.getValue().initialized()) {
+                    if (reasons.containsKey(other)) {
+                        reasons.put(entry.getKey(), "initializes " + other);
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return reasons;
+    }
+
+    private Initializer initializer(String name) {
+        ClassNode node = load(name);
+        if (node == null) {
+            return new Initializer("class file not found", Set.of());
+        }
+        Set<String> initialized = new TreeSet<>();
+        if (node.superName != null && inScope(node.superName)) {
+            initialized.add(node.superName);
+        }
+        // every method the static initializer may reach, and what each of them initializes
+        Deque<String> pending = new ArrayDeque<>(List.of(name + ".<clinit>()V"));
+        Set<String> visited = new HashSet<>();
+        while (!pending.isEmpty()) {
+            String key = pending.pop();
+            if (!visited.add(key)) {
+                continue;
+            }
+            Method method = method(key);
+            if (method.unsafe() != null) {
+                return new Initializer(key + " " + method.unsafe(), Set.of());
+            }
+            initialized.addAll(method.initialized());
+            pending.addAll(method.calls());
+        }
+        initialized.remove(name);
+        return new Initializer(null, initialized);
+    }
+
+    /** Summarize a method, given as its owner, name and descriptor. */
+    private Method method(String key) {
+        int dot = key.indexOf('.');
+        int paren = key.indexOf('(');
+        ClassNode node = load(key.substring(0, dot));
+        MethodNode method =
+                node == null
+                        ? null
+                        : find(node, key.substring(dot + 1, paren), key.substring(paren));
+        Set<String> initialized = new TreeSet<>();
+        Set<String> calls = new TreeSet<>();
+        if (method == null) {
+            // inherited, abstract or not found: only the declared method is followed
+            return new Method(null, initialized, calls);
+        }
+        for (AbstractInsnNode insn : method.instructions) {
+            if (insn instanceof MethodInsnNode call) {
+                String target = call.owner + '.' + call.name;
+                for (String denied : DENIED) {
+                    if (target.startsWith(denied)) {
+                        return new Method("calls " + target, Set.of(), Set.of());
+                    }
+                }
+                if (inScope(call.owner)) {
+                    if (call.getOpcode() == Opcodes.INVOKESTATIC) {
+                        initialized.add(call.owner);
+                    }
+                    calls.add(target + call.desc);
+                }
+            } else if (insn instanceof FieldInsnNode field
+                    && (insn.getOpcode() == Opcodes.GETSTATIC
+                            || insn.getOpcode() == Opcodes.PUTSTATIC)
+                    && inScope(field.owner)) {
+                initialized.add(field.owner);
+            } else if (insn instanceof TypeInsnNode type
+                    && insn.getOpcode() == Opcodes.NEW
+                    && inScope(type.desc)) {
+                initialized.add(type.desc);
+            }
+        }
+        return new Method(null, initialized, calls);
+    }
+
+    private static MethodNode find(ClassNode node, String name, String desc) {
+        for (MethodNode method : node.methods) {
+            if (method.name.equals(name) && method.desc.equals(desc)) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    private ClassNode load(String name) {
+        if (classes.containsKey(name)) {
+            return classes.get(name);
+        }
+        ClassNode node = null;
+        try (InputStream in =
+                NativeInitClasses.class.getClassLoader().getResourceAsStream(name + ".class")) {
+            if (in != null) {
+                node = new ClassNode();
+                new ClassReader(in).accept(node, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+            }
+        } catch (IOException e) {
+            node = null;
+        }
+        classes.put(name, node);
+        return node;
+    }
+
+    private static boolean inScope(String name) {
+        return SCOPE.stream().anyMatch(name::startsWith);
+    }
+
+    /** Every class of the rule implementation package, from the jars holding the rules. */
+    private static Set<String> rulePackageClasses() throws IOException, URISyntaxException {
+        Set<Path> jars = new TreeSet<>();
+        for (IRule rule : RuleRegistry.getRules()) {
+            if (rule.getClass().getName().replace('.', '/').startsWith(RULES_PACKAGE)) {
+                jars.add(
+                        Paths.get(
+                                rule.getClass()
+                                        .getProtectionDomain()
+                                        .getCodeSource()
+                                        .getLocation()
+                                        .toURI()));
+            }
+        }
+        Set<String> names = new TreeSet<>();
+        for (Path jar : jars) {
+            try (JarFile file = new JarFile(jar.toFile())) {
+                file.stream()
+                        .map(JarEntry::getName)
+                        .filter(n -> n.startsWith(RULES_PACKAGE) && n.endsWith(".class"))
+                        .map(n -> n.substring(0, n.length() - ".class".length()))
+                        .forEach(names::add);
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/** The recordings uploaded by the tests, all made from the bundled sample recording. */
+final class Recordings {
+
+    static final String SAMPLE = "/profiling_sample.jfr";
+    static final String COMPRESSED_SAMPLE = "/profiling_sample.jfr.gz";
+
+    private Recordings() {}
+
+    static File sample() throws URISyntaxException {
+        return resource(SAMPLE);
+    }
+
+    static File compressedSample() throws URISyntaxException {
+        return resource(COMPRESSED_SAMPLE);
+    }
+
+    static byte[] sampleBytes() {
+        try (InputStream stream = Recordings.class.getResourceAsStream(SAMPLE)) {
+            return stream.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * A temporary recording made of copies of the sample. Concatenated recordings are valid
+     * multi-chunk recordings, and each number of copies has a digest of its own.
+     */
+    static File copies(String prefix, int copies) throws IOException {
+        byte[] sample = sampleBytes();
+        byte[][] parts = new byte[copies][];
+        for (int i = 0; i < copies; i++) {
+            parts[i] = sample;
+        }
+        return file(prefix, ".jfr", parts);
+    }
+
+    /** A temporary recording made of only the first chunk of the sample. */
+    static File firstChunk(String prefix) throws IOException {
+        byte[] sample = sampleBytes();
+        // the chunk size follows the magic and the major and minor versions in the chunk header
+        long size = ByteBuffer.wrap(sample).getLong(8);
+        return file(prefix, ".jfr", Arrays.copyOf(sample, (int) size));
+    }
+
+    /** A temporary file holding the given parts in order, deleted when the tests exit. */
+    static File file(String prefix, String suffix, byte[]... parts) throws IOException {
+        File file = File.createTempFile(prefix, suffix);
+        file.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            for (byte[] part : parts) {
+                out.write(part);
+            }
+        }
+        return file;
+    }
+
+    private static File resource(String name) throws URISyntaxException {
+        return Paths.get(Recordings.class.getResource(name).toURI()).toFile();
+    }
+}
@@ -19,7 +19,11 @@ import static io.restassured.RestAssured.given;
 
 import java.io.File;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -29,13 +33,17 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import io.quarkus.test.junit.QuarkusTest;
 import io.restassured.http.ContentType;
+import io.restassured.path.json.JsonPath;
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
+import org.openjdk.jmc.flightrecorder.rules.DependsOn;
+import org.openjdk.jmc.flightrecorder.rules.IRule;
 import org.openjdk.jmc.flightrecorder.rules.RuleRegistry;
 
 @QuarkusTest
@@ -182,6 +190,692 @@ public class ReportResourceTest {
         MatcherAssert.assertThat(map.keySet(), Matchers.empty());
     }
 
+    @Test
+    public void testRepeatedReportIsServedFromCache() throws URISyntaxException {
+        File jfr = Recordings.sample();
+        long hitsBefore =
+                given().when().get("/stats").then().extract().jsonPath().getLong("cache.hits");
+
+        String first =
+                given().contentType("multipart/form-data")
+                        .multiPart("file", jfr)
+                        .formParam("filter", "heap, LongGcPause")
+                        .when()
+                        .post("/report")
+                        .then()
+                        .statusCode(200)
+                        .extract()
+                        .asString();
+        String second =
+                given().contentType("multipart/form-data")
+                        .multiPart("file", jfr)
+                        .formParam("filter", "LongGcPause,heap")
+                        .when()
+                        .post("/report")
+                        .then()
+                        .statusCode(200)
+                        .extract()
+                        .asString();
+
+        MatcherAssert.assertThat(second, Matchers.equalTo(first));
+        given().when()
+                .get("/stats")
+                .then()
+                .statusCode(200)
+                .body("cache.hits", Matchers.greaterThan((int) hitsBefore));
+    }
+
+    @Test
+    public void testStatsEndpoint() {
+        given().when()
+                .get("/stats")
+                .then()
+                .statusCode(200)
+                .contentType("application/json")
+                .body("cache.hits", Matchers.greaterThanOrEqualTo(0))
+                .body("executor.parallelism", Matchers.greaterThan(0))
+                .body("executor.active", Matchers.greaterThanOrEqualTo(0))
+                .body("executor.queued", Matchers.greaterThanOrEqualTo(0))
+                .body("executor.rejected", Matchers.greaterThanOrEqualTo(0));
+    }
+
+    @Test
+    public void testAdmissionReservationsAreReleased() throws URISyntaxException {
+        File jfr = Recordings.sample();
+        given().contentType("multipart/form-data")
+                .multiPart("file", jfr)
+                .formParam("filter", "HighGc")
+                .when()
+                .post("/report")
+                .then()
+                .statusCode(200);
+
+        JsonPath stats = given().when().get("/stats").then().statusCode(200).extract().jsonPath();
+        MatcherAssert.assertThat(stats.getLong("admission.budget"), Matchers.greaterThan(0L));
+        // only parsed recordings retained for reuse may still hold reservations
+        MatcherAssert.assertThat(
+                stats.getLong("admission.reserved"),
+                Matchers.equalTo(stats.getLong("admission.retained")));
+        MatcherAssert.assertThat(stats.getInt("admission.inFlight"), Matchers.equalTo(0));
+    }
+
+    @Test
+    public void testReportJobLifecycle() throws URISyntaxException, InterruptedException {
+        File jfr = Recordings.sample();
+        String id =
+                given().contentType("multipart/form-data")
+                        .multiPart("file", jfr)
+                        .formParam("filter", "heap")
+                        .when()
+                        .post("/report/jobs")
+                        .then()
+                        .statusCode(202)
+                        .header("Location", Matchers.containsString("/report/jobs/"))
+                        .body("id", Matchers.not(Matchers.emptyOrNullString()))
+                        .extract()
+                        .jsonPath()
+                        .getString("id");
+
+        String status = null;
+        for (int i = 0; i < 300 && !"COMPLETED".equals(status); i++) {
+            status =
+                    given().when()
+                            .get("/report/jobs/" + id)
+                            .then()
+                            .statusCode(200)
+                            .body("id", Matchers.equalTo(id))
+                            .extract()
+                            .jsonPath()
+                            .getString("status");
+            Thread.sleep(100);
+        }
+        MatcherAssert.assertThat(status, Matchers.equalTo("COMPLETED"));
+
+        Map<String, Object> result =
+                given().when()
+                        .get("/report/jobs/" + id + "/result")
+                        .then()
+                        .statusCode(200)
+                        .contentType("application/json")
+                        .extract()
+                        .jsonPath()
+                        .getMap("");
+        MatcherAssert.assertThat(result, Matchers.not(Matchers.anEmptyMap()));
+
+        given().when().delete("/report/jobs/" + id).then().statusCode(204);
+        given().when().get("/report/jobs/" + id).then().statusCode(404);
+    }
+
+    @Test
+    public void testStreamingReportEndpoint() throws URISyntaxException, JsonProcessingException {
+        File jfr = Recordings.sample();
+        String response =
+                given().contentType("multipart/form-data")
+                        .accept("application/x-ndjson")
+                        .multiPart("file", jfr)
+                        .formParam("filter", "LongGcPause,heap")
+                        .when()
+                        .post("/report/stream")
+                        .then()
+                        .statusCode(200)
+                        .extract()
+                        .asString();
+
+        ObjectMapper oMapper = new ObjectMapper();
+        List<String> lines = response.lines().filter(l -> !l.isBlank()).toList();
+        MatcherAssert.assertThat(lines, Matchers.hasSize(9));
+        for (String line : lines) {
+            Map<String, Object> result =
+                    oMapper.readValue(line, new TypeReference<Map<String, Object>>() {});
+            MatcherAssert.assertThat(
+                    (String) result.get("id"), Matchers.not(Matchers.emptyOrNullString()));
+            MatcherAssert.assertThat(
+                    (String) result.get("name"), Matchers.not(Matchers.emptyOrNullString()));
+            MatcherAssert.assertThat(result.get("score"), Matchers.notNullValue());
+        }
+    }
+
+    @Test
+    public void testPartialReportEndpoint() throws URISyntaxException {
+        File jfr = Recordings.sample();
+        Map<String, Map<String, Object>> map =
+                given().contentType("multipart/form-data")
+                        .accept(ContentType.JSON)
+                        .multiPart("file", jfr)
+                        .formParam("filter", "LongGcPause,heap")
+                        .formParam("partial", "true")
+                        .when()
+                        .post("/report")
+                        .then()
+                        .statusCode(200)
+                        .contentType("application/json")
+                        .extract()
+                        .jsonPath()
+                        .getMap("");
+
+        MatcherAssert.assertThat(map, Matchers.aMapWithSize(9));
+        for (var e : map.entrySet()) {
+            MatcherAssert.assertThat(e.getValue().get("id"), Matchers.equalTo(e.getKey()));
+            MatcherAssert.assertThat(e.getValue().get("elapsedMs"), Matchers.notNullValue());
+            MatcherAssert.assertThat(e.getValue().get("status"), Matchers.nullValue());
+        }
+    }
+
+    @Test
+    public void testReportStageMetrics() throws URISyntaxException {
+        File jfr = Recordings.compressedSample();
+        given().contentType("multipart/form-data")
+                .multiPart("file", jfr)
+                .formParam("filter", "HighGc,LongGcPause")
+                .when()
+                .post("/report")
+                .then()
+                .statusCode(200);
+        given().contentType("multipart/form-data")
+                .multiPart("file", jfr)
+                .when()
+                .post("/report/no-such-route-1234")
+                .then()
+                .statusCode(404);
+
+        given().when()
+                .get("/q/metrics")
+                .then()
+                .statusCode(200)
+                .body(
+                        Matchers.allOf(
+                                Matchers.containsString("path=\"/report\""),
+                                Matchers.containsString("path=\"other\""),
+                                Matchers.not(Matchers.containsString("no-such-route-1234")),
+                                Matchers.containsString("cryostat_reports_cache_hits_total"),
+                                Matchers.containsString("cryostat_reports_executor_rejected_total"),
+                                Matchers.containsString("cryostat_reports_stage_seconds_count"),
+                                Matchers.containsString("stage=\"decompression\""),
+                                Matchers.containsString("stage=\"admission\""),
+                                Matchers.containsString("cryostat_reports_upload_size_bytes"),
+                                Matchers.containsString("cryostat_reports_responses_total"),
+                                Matchers.containsString("cryostat_reports_heap_headroom_bytes")));
+    }
+
+    @Test
+    public void testRuleProfile() throws URISyntaxException {
+        File jfr = Recordings.sample();
+        JsonPath json =
+                given().contentType("multipart/form-data")
+                        .accept(ContentType.JSON)
+                        .multiPart("file", jfr)
+                        .formParam("filter", "LongGcPause,heap")
+                        .formParam("profile", "true")
+                        .when()
+                        .post("/report")
+                        .then()
+                        .statusCode(200)
+                        .contentType("application/json")
+                        .extract()
+                        .jsonPath();
+
+        Map<String, Object> results = json.getMap("results");
+        MatcherAssert.assertThat(results, Matchers.aMapWithSize(9));
+        List<Map<String, Object>> profile = json.getList("profile");
+        MatcherAssert.assertThat(profile, Matchers.hasSize(Matchers.greaterThanOrEqualTo(9)));
+        for (Map<String, Object> p : profile) {
+            MatcherAssert.assertThat(p.get("id"), Matchers.notNullValue());
+            MatcherAssert.assertThat(p.get("wallMs"), Matchers.notNullValue());
+            MatcherAssert.assertThat(p.get("events"), Matchers.notNullValue());
+        }
+        MatcherAssert.assertThat(
+                profile.stream().map(p -> p.get("id")).toList(),
+                Matchers.hasItems(results.keySet().toArray()));
+
+        List<Map<String, Object>> stats =
+                given().when()
+                        .get("/metrics/rules")
+                        .then()
+                        .statusCode(200)
+                        .extract()
+                        .jsonPath()
+                        .getList("");
+        MatcherAssert.assertThat(
+                stats.stream().map(s -> s.get("id")).toList(),
+                Matchers.hasItems(results.keySet().toArray()));
+    }
+
+    @Test
+    public void testCborReport() throws Exception {
+        File jfr = Recordings.sample();
+        byte[] response =
+                given().contentType("multipart/form-data")
+                        .accept("application/cbor")
+                        .multiPart("file", jfr)
+                        .when()
+                        .post("/report")
+                        .then()
+                        .statusCode(200)
+                        .contentType("application/cbor")
+                        .extract()
+                        .asByteArray();
+
+        Map<String, RuleEvaluation> map =
+                new CBORMapper()
+                        .readValue(response, new TypeReference<Map<String, RuleEvaluation>>() {});
+        MatcherAssert.assertThat(map, Matchers.aMapWithSize(RuleRegistry.getRules().size()));
+        for (RuleEvaluation evaluation : map.values()) {
+            MatcherAssert.assertThat(
+                    evaluation.getName(), Matchers.not(Matchers.emptyOrNullString()));
+            MatcherAssert.assertThat(
+                    evaluation.getTopic(), Matchers.not(Matchers.emptyOrNullString()));
+        }
+    }
+
+    @Test
+    public void testUnsupportedAcceptFallsBackToJson() throws Exception {
+        File jfr = Recordings.sample();
+        String response =
+                given().contentType("multipart/form-data")
+                        .accept("text/csv")
+                        .multiPart("file", jfr)
+                        .when()
+                        .post("/report")
+                        .then()
+                        .statusCode(200)
+                        .contentType("application/json")
+                        .extract()
+                        .asString();
+
+        Map<String, RuleEvaluation> map =
+                new ObjectMapper()
+                        .readValue(response, new TypeReference<Map<String, RuleEvaluation>>() {});
+        MatcherAssert.assertThat(map, Matchers.aMapWithSize(RuleRegistry.getRules().size()));
+    }
+
+    @Test
+    public void testRuleEvaluationMatchesGenerator() throws URISyntaxException {
+        File jfr = Recordings.sample();
+        // a plain request is answered by the generator
+        Map<String, Map<String, Object>> generated =
+                given().contentType("multipart/form-data")
+                        .multiPart("file", jfr)
+                        .when()
+                        .post("/report")
+                        .then()
+                        .statusCode(200)
+                        .extract()
+                        .jsonPath()
+                        .getMap("");
+        // and one with a window covering the whole recording is assembled from individually
+        // evaluated rules
+        Map<String, Map<String, Object>> evaluated =
+                given().contentType("multipart/form-data")
+                        .multiPart("file", jfr)
+                        .formParam("start", "0")
+                        .when()
+                        .post("/report")
+                        .then()
+                        .statusCode(200)
+                        .extract()
+                        .jsonPath()
+                        .getMap("");
+
+        MatcherAssert.assertThat(evaluated.keySet(), Matchers.equalTo(generated.keySet()));
+        for (String id : generated.keySet()) {
+            Map<String, Object> expected = generated.get(id);
+            Map<String, Object> actual = evaluated.get(id);
+            for (String field : List.of("name", "topic", "score")) {
+                MatcherAssert.assertThat(
+                        id + " " + field, actual.get(field), Matchers.equalTo(expected.get(field)));
+            }
+        }
+    }
+
+    @Test
+    public void testChunkedReportMatchesGenerator() throws Exception {
+        File jfr = Recordings.copies("chunked", 3);
+        // a plain request for a recording of several chunks parses them concurrently
+        Map<String, Map<String, Object>> chunked =
+                given().contentType("multipart/form-data")
+                        .multiPart("file", jfr)
+                        .when()
+                        .post("/report")
+                        .then()
+                        .statusCode(200)
+                        .extract()
+                        .jsonPath()
+                        .getMap("");
+        // while one selecting every rule by name is answered by the generator
+        List<String> ids = RuleRegistry.getRules().stream().map(IRule::getId).toList();
+        Map<String, Map<String, Object>> generated =
+                given().contentType("multipart/form-data")
+                        .multiPart("file", jfr)
+                        .formParam("filter", String.join(",", ids))
+                        .when()
+                        .post("/report")
+                        .then()
+                        .statusCode(200)
+                        .extract()
+                        .jsonPath()
+                        .getMap("");
+
+        MatcherAssert.assertThat(chunked.keySet(), Matchers.equalTo(generated.keySet()));
+        for (String id : generated.keySet()) {
+            for (String field : List.of("name", "topic", "score")) {
+                MatcherAssert.assertThat(
+                        id + " " + field,
+                        chunked.get(id).get(field),
+                        Matchers.equalTo(generated.get(id).get(field)));
+            }
+        }
+    }
+
+    @Test
+    public void testFilteredReportMatchesUnfiltered() throws Exception {
+        // a recording whose digest no other test has seen, so that neither report is cached
+        File jfr = Recordings.copies("filtered", 2);
+        // rules which depend on no other rule, so that selecting them alone cannot change them
+        List<String> ids =
+                RuleRegistry.getRules().stream()
+                        .filter(r -> r.getClass().getAnnotation(DependsOn.class) == null)
+                        .map(IRule::getId)
+                        .sorted()
+                        .limit(8)
+                        .toList();
+
+        Map<String, Map<String, Object>> unfiltered =
+                given().contentType("multipart/form-data")
+                        .multiPart("file", jfr)
+                        .when()
+                        .post("/report")
+                        .then()
+                        .statusCode(200)
+                        .extract()
+                        .jsonPath()
+                        .getMap("");
+        Map<String, Map<String, Object>> filtered =
+                given().contentType("multipart/form-data")
+                        .multiPart("file", jfr)
+                        .formParam("filter", String.join(",", ids))
+                        .when()
+                        .post("/report")
+                        .then()
+                        .statusCode(200)
+                        .extract()
+                        .jsonPath()
+                        .getMap("");
+
+        MatcherAssert.assertThat(filtered.keySet(), Matchers.containsInAnyOrder(ids.toArray()));
+        for (String id : ids) {
+            for (String field : List.of("name", "topic", "score")) {
+                MatcherAssert.assertThat(
+                        id + " " + field,
+                        filtered.get(id).get(field),
+                        Matchers.equalTo(unfiltered.get(id).get(field)));
+            }
+        }
+    }
+
+    @Test
+    public void testParsedRecordingIsReusedAcrossFilters() throws Exception {
+        // a two-chunk recording whose digest no other test has seen
+        File jfr = Recordings.copies("two-chunks", 2);
+
+        // only requests with parse options are assembled from a parsed recording
+        given().contentType("multipart/form-data")
+                .multiPart("file", jfr)
+                .formParam("filter", "HighGc")
+                .formParam("start", "0")
+                .when()
+                .post("/report")
+                .then()
+                .statusCode(200);
+        long hitsBefore =
+                given().when()
+                        .get("/stats")
+                        .then()
+                        .extract()
+                        .jsonPath()
+                        .getLong("parsedCache.hits");
+
+        Map<String, Object> map =
+                given().contentType("multipart/form-data")
+                        .multiPart("file", jfr)
+                        .formParam("filter", "HighGc,LongGcPause")
+                        .formParam("start", "0")
+                        .when()
+                        .post("/report")
+                        .then()
+                        .statusCode(200)
+                        .extract()
+                        .jsonPath()
+                        .getMap("");
+
+        MatcherAssert.assertThat(
+                map.keySet(), Matchers.containsInAnyOrder("HighGc", "LongGcPause"));
+        long hitsAfter =
+                given().when()
+                        .get("/stats")
+                        .then()
+                        .extract()
+                        .jsonPath()
+                        .getLong("parsedCache.hits");
+        MatcherAssert.assertThat(hitsAfter, Matchers.greaterThan(hitsBefore));
+    }
+
+    @Test
+    public void testIncrementalAnalysisReusesChunks() throws Exception {
+        // continuous recordings which only grow, with digests no other test has seen, made of
+        // copies of the sample whose chunk headers are shifted in time so that no two are alike
+        byte[] sample = Recordings.sampleBytes();
+        int chunksPerCopy = chunkOffsets(sample).size();
+        byte[][] copies = new byte[5][];
+        for (int i = 0; i < copies.length; i++) {
+            copies[i] = shifted(sample, i);
+        }
+        File earlier = Recordings.file("four-copies", ".jfr", Arrays.copyOf(copies, 4));
+        File later = Recordings.file("five-copies", ".jfr", copies);
+
+        given().contentType("multipart/form-data")
+                .multiPart("file", earlier)
+                .formParam("recordingId", "incremental-test")
+                .when()
+                .post("/report")
+                .then()
+                .statusCode(200);
+        JsonPath before = given().when().get("/stats").then().extract().jsonPath();
+
+        Map<String, Object> map =
+                given().contentType("multipart/form-data")
+                        .multiPart("file", later)
+                        .formParam("recordingId", "incremental-test")
+                        .when()
+                        .post("/report")
+                        .then()
+                        .statusCode(200)
+                        .extract()
+                        .jsonPath()
+                        .getMap("");
+
+        MatcherAssert.assertThat(map, Matchers.aMapWithSize(RuleRegistry.getRules().size()));
+        JsonPath after = given().when().get("/stats").then().extract().jsonPath();
+        // only the chunks of the appended copy are parsed
+        MatcherAssert.assertThat(
+                after.getLong("incremental.parsedChunks")
+                        - before.getLong("incremental.parsedChunks"),
+                Matchers.equalTo((long) chunksPerCopy));
+        MatcherAssert.assertThat(
+                after.getLong("incremental.reusedChunks")
+                        - before.getLong("incremental.reusedChunks"),
+                Matchers.equalTo(4L * chunksPerCopy));
+    }
+
+    private static List<Integer> chunkOffsets(byte[] recording) {
+        List<Integer> offsets = new ArrayList<>();
+        ByteBuffer buf = ByteBuffer.wrap(recording);
+        for (int offset = 0; offset < recording.length; ) {
+            offsets.add(offset);
+            offset += (int) buf.getLong(offset + 8);
+        }
+        return offsets;
+    }
+
+    /** A copy of the recording with the start time in each chunk header moved on by seconds. */
+    private static byte[] shifted(byte[] recording, int seconds) {
+        byte[] copy = recording.clone();
+        ByteBuffer buf = ByteBuffer.wrap(copy);
+        for (int offset : chunkOffsets(recording)) {
+            buf.putLong(offset + 32, buf.getLong(offset + 32) + seconds * 1_000_000_000L);
+        }
+        return copy;
+    }
+
+    @Test
+    public void testMultiChunkRecording() throws Exception {
+        File jfr = Recordings.copies("three-chunks", 3);
+
+        Map<String, Map<String, Object>> map =
+                given().contentType("multipart/form-data")
+                        .multiPart("file", jfr)
+                        .when()
+                        .post("/report")
+                        .then()
+                        .statusCode(200)
+                        .extract()
+                        .jsonPath()
+                        .getMap("");
+
+        MatcherAssert.assertThat(map, Matchers.aMapWithSize(RuleRegistry.getRules().size()));
+        // events from the merged chunks were available to at least some rules
+        MatcherAssert.assertThat(
+                map.values().stream()
+                        .map(v -> ((Number) v.get("score")).doubleValue())
+                        .filter(score -> score >= 0)
+                        .count(),
+                Matchers.greaterThan(0L));
+    }
+
+    @Test
+    public void testTimeWindowAndEventTypeFilters() throws URISyntaxException {
+        File jfr = Recordings.sample();
+        Map<String, Map<String, Object>> map =
+                given().contentType("multipart/form-data")
+                        .multiPart("file", jfr)
+                        .formParam("filter", "LongGcPause,heap")
+                        .formParam("start", "2999-01-01T00:00:00Z")
+                        .formParam("eventTypes", "jdk.GarbageCollection,jdk.GCHeapSummary")
+                        .when()
+                        .post("/report")
+                        .then()
+                        .statusCode(200)
+                        .extract()
+                        .jsonPath()
+                        .getMap("");
+        MatcherAssert.assertThat(map, Matchers.aMapWithSize(9));
+
+        // neither the window nor the event types must let through the events which the rules
+        // evaluate over the full recording
+        Map<String, Map<String, Object>> untyped =
+                given().contentType("multipart/form-data")
+                        .multiPart("file", jfr)
+                        .formParam("filter", "LongGcPause,heap")
+                        .formParam("eventTypes", "no.such.Event")
+                        .when()
+                        .post("/report")
+                        .then()
+                        .statusCode(200)
+                        .extract()
+                        .jsonPath()
+                        .getMap("");
+        Map<String, Map<String, Object>> full =
+                given().contentType("multipart/form-data")
+                        .multiPart("file", jfr)
+                        .formParam("filter", "LongGcPause,heap")
+                        .when()
+                        .post("/report")
+                        .then()
+                        .statusCode(200)
+                        .extract()
+                        .jsonPath()
+                        .getMap("");
+        MatcherAssert.assertThat(
+                evaluations(map), Matchers.not(Matchers.equalTo(evaluations(full))));
+        MatcherAssert.assertThat(
+                evaluations(untyped), Matchers.not(Matchers.equalTo(evaluations(full))));
+
+        given().contentType("multipart/form-data")
+                .multiPart("file", jfr)
+                .formParam("last", "yesterday")
+                .when()
+                .post("/report")
+                .then()
+                .statusCode(400);
+    }
+
+    @Test
+    public void testMalformedUploadsAreRejected() throws Exception {
+        byte[] sample = Recordings.sampleBytes();
+        File truncated =
+                Recordings.file("truncated", ".jfr", Arrays.copyOf(sample, sample.length / 2));
+        File garbage = Recordings.file("garbage", ".jfr", "this is not a recording".getBytes());
+
+        given().contentType("multipart/form-data")
+                .multiPart("file", truncated)
+                .when()
+                .post("/report")
+                .then()
+                .statusCode(400)
+                .body(Matchers.containsString("truncated"));
+        given().contentType("multipart/form-data")
+                .multiPart("file", garbage)
+                .when()
+                .post("/report")
+                .then()
+                .statusCode(400)
+                .body(Matchers.containsString("Not a JFR recording"));
+    }
+
+    @Test
+    public void testBatchReportEndpoint() throws URISyntaxException, JsonProcessingException {
+        File jfr = Recordings.sample();
+        File gz = Recordings.compressedSample();
+        String response =
+                given().contentType("multipart/form-data")
+                        .accept("application/x-ndjson")
+                        .multiPart("file", jfr)
+                        .multiPart("file", gz)
+                        .formParam("filter", "LongGcPause,heap")
+                        .formParam("filters", "{\"profiling_sample.jfr.gz\": \"HighGc\"}")
+                        .when()
+                        .post("/report/batch")
+                        .then()
+                        .statusCode(200)
+                        .extract()
+                        .asString();
+
+        ObjectMapper oMapper = new ObjectMapper();
+        List<String> lines = response.lines().filter(l -> !l.isBlank()).toList();
+        MatcherAssert.assertThat(lines, Matchers.hasSize(2));
+        for (String line : lines) {
+            Map<String, Object> result =
+                    oMapper.readValue(line, new TypeReference<Map<String, Object>>() {});
+            MatcherAssert.assertThat(result.get("status"), Matchers.equalTo(200));
+            Map<String, Object> report =
+                    oMapper.convertValue(
+                            result.get("report"), new TypeReference<Map<String, Object>>() {});
+            if ("profiling_sample.jfr.gz".equals(result.get("name"))) {
+                MatcherAssert.assertThat(report.keySet(), Matchers.contains("HighGc"));
+            } else {
+                MatcherAssert.assertThat(report, Matchers.aMapWithSize(9));
+            }
+        }
+    }
+
+    private static Map<String, List<Object>> evaluations(Map<String, Map<String, Object>> report) {
+        Map<String, List<Object>> evaluations = new HashMap<>();
+        report.forEach(
+                (id, entry) ->
+                        evaluations.put(
+                                id, Arrays.asList(entry.get("score"), entry.get("evaluation"))));
+        return evaluations;
+    }
+
     private static class RuleEvaluation {
         private double score;
         private String name;
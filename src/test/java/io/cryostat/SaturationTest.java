@@ -0,0 +1,94 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat;
+
+import static io.restassured.RestAssured.given;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.TestProfile;
+import io.restassured.response.Response;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+
+@QuarkusTest
+@TestProfile(SaturationTest.Profile.class)
+public class SaturationTest {
+
+    private static final int COPIES = 8;
+    private static final int REQUESTS = 8;
+
+    public static class Profile extends CachesDisabledProfile {
+        @Override
+        protected Map<String, String> overrides() {
+            // one analysis at a time and one waiting, with admission out of the way, so that
+            // concurrent requests can only be turned away by the executor
+            return Map.of(
+                    "io.cryostat.reports.analysis.parallelism", "1",
+                    "io.cryostat.reports.analysis.queue-size", "1",
+                    "io.cryostat.reports.analysis.retry-after", "7",
+                    "io.cryostat.reports.admission.budget", "1099511627776");
+        }
+    }
+
+    @Test
+    public void testSaturatedExecutorIsServiceUnavailable() throws Exception {
+        File jfr = Recordings.copies("saturation", COPIES);
+
+        ExecutorService clients = Executors.newFixedThreadPool(REQUESTS);
+        List<Response> responses = new ArrayList<>();
+        try {
+            CountDownLatch ready = new CountDownLatch(1);
+            List<Future<Response>> futures = new ArrayList<>();
+            for (int i = 0; i < REQUESTS; i++) {
+                futures.add(
+                        clients.submit(
+                                () -> {
+                                    ready.await();
+                                    return given().contentType("multipart/form-data")
+                                            .multiPart("file", jfr)
+                                            .when()
+                                            .post("/report");
+                                }));
+            }
+            ready.countDown();
+            for (Future<Response> future : futures) {
+                responses.add(future.get());
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+
+        List<Response> rejected =
+                responses.stream().filter(r -> r.getStatusCode() == 503).toList();
+        MatcherAssert.assertThat(rejected, Matchers.not(Matchers.empty()));
+        for (Response response : rejected) {
+            MatcherAssert.assertThat(response.getHeader("Retry-After"), Matchers.equalTo("7"));
+        }
+        for (Response response : responses) {
+            MatcherAssert.assertThat(response.getStatusCode(), Matchers.oneOf(200, 503));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat;
+
+import static io.restassured.RestAssured.given;
+
+import java.io.File;
+import java.util.Map;
+
+import io.cryostat.reports.Digests;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import io.restassured.path.json.JsonPath;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+
+@QuarkusTest
+@TestProfile(ShardingTest.Profile.class)
+public class ShardingTest {
+
+    static final String SELF = "http://localhost:8081";
+    static final String PEER = "http://localhost:8082";
+
+    public static class Profile implements QuarkusTestProfile {
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of(
+                    "io.cryostat.reports.peers", SELF + "," + PEER,
+                    "io.cryostat.reports.peers.self", SELF);
+        }
+    }
+
+    @Test
+    public void testLoad() {
+        JsonPath load = given().when().get("/load").then().statusCode(200).extract().jsonPath();
+        MatcherAssert.assertThat(load.getString("self"), Matchers.equalTo(SELF));
+        MatcherAssert.assertThat(load.getLong("budgetBytes"), Matchers.greaterThan(0L));
+        MatcherAssert.assertThat(
+                load.getLong("freeBytes"), Matchers.lessThanOrEqualTo(load.getLong("budgetBytes")));
+        MatcherAssert.assertThat(load.getInt("queueDepth"), Matchers.greaterThanOrEqualTo(0));
+        MatcherAssert.assertThat(load.getList("parsedRecordings"), Matchers.notNullValue());
+    }
+
+    @Test
+    public void testReportCarriesOwnerOfRecording() throws Exception {
+        File jfr = Recordings.sample();
+        String digest = Digests.sha256(jfr.toPath());
+        JsonPath route =
+                given().when()
+                        .get("/route/" + digest)
+                        .then()
+                        .statusCode(200)
+                        .extract()
+                        .jsonPath();
+        String owner = route.getString("owner");
+        MatcherAssert.assertThat(owner, Matchers.oneOf(SELF, PEER));
+        MatcherAssert.assertThat(route.getBoolean("self"), Matchers.equalTo(owner.equals(SELF)));
+
+        given().contentType("multipart/form-data")
+                .multiPart("file", jfr)
+                .formParam("filter", "HighGc")
+                .when()
+                .post("/report")
+                .then()
+                .statusCode(200)
+                .header("X-Report-Owner", owner);
+    }
+
+    @Test
+    public void testRouteRejectsMalformedDigest() {
+        given().when().get("/route/not-a-digest").then().statusCode(400);
+    }
+}
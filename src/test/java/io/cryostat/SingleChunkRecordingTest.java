@@ -0,0 +1,74 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat;
+
+import static io.restassured.RestAssured.given;
+
+import java.io.File;
+import java.util.Map;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.TestProfile;
+import io.restassured.http.ContentType;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmc.flightrecorder.rules.RuleRegistry;
+
+@QuarkusTest
+@TestProfile(SingleChunkRecordingTest.Profile.class)
+public class SingleChunkRecordingTest {
+
+    public static class Profile extends CachesDisabledProfile {
+        @Override
+        protected Map<String, String> overrides() {
+            // a working set so small that the events of some rules alone exceed it
+            return Map.of("io.cryostat.reports.admission.budget", "1048576");
+        }
+    }
+
+    @Test
+    public void testOversizedSingleChunkIsWindowed() throws Exception {
+        // with a single chunk there is no chunk boundary to start a window at
+        File jfr = Recordings.firstChunk("single-chunk");
+
+        Map<String, Map<String, Object>> map =
+                given().contentType("multipart/form-data")
+                        .accept(ContentType.JSON)
+                        .multiPart("file", jfr)
+                        .when()
+                        .post("/report")
+                        .then()
+                        .statusCode(200)
+                        .extract()
+                        .jsonPath()
+                        .getMap("");
+
+        MatcherAssert.assertThat(map, Matchers.aMapWithSize(RuleRegistry.getRules().size()));
+        long windowed =
+                map.values().stream().filter(e -> "WINDOWED".equals(e.get("status"))).count();
+        MatcherAssert.assertThat(windowed, Matchers.greaterThan(0L));
+        int inFlight =
+                given().when()
+                        .get("/stats")
+                        .then()
+                        .statusCode(200)
+                        .extract()
+                        .jsonPath()
+                        .getInt("admission.inFlight");
+        MatcherAssert.assertThat(inFlight, Matchers.equalTo(0));
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat;
+
+import static io.restassured.RestAssured.given;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.test.common.http.TestHTTPResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.TestProfile;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmc.flightrecorder.rules.RuleRegistry;
+
+@QuarkusTest
+@TestProfile(SlowClientTest.Profile.class)
+public class SlowClientTest {
+
+    private static final int READ_SIZE = 256;
+
+    public static class Profile extends CachesDisabledProfile {}
+
+    @TestHTTPResource("/report")
+    URI report;
+
+    @Test
+    public void testReportIsStreamedToSlowClient() throws Exception {
+        String boundary = "slow-client-test-boundary";
+        byte[] head =
+                String.format(
+                                "--%s\r\n"
+                                        + "Content-Disposition: form-data; name=\"file\";"
+                                        + " filename=\"slow.jfr\"\r\n"
+                                        + "Content-Type: application/octet-stream\r\n\r\n",
+                                boundary)
+                        .getBytes(StandardCharsets.US_ASCII);
+        byte[] tail = String.format("\r\n--%s--\r\n", boundary).getBytes(StandardCharsets.US_ASCII);
+        HttpRequest request =
+                HttpRequest.newBuilder(report)
+                        .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                        .header("Accept", "application/json")
+                        .POST(
+                                HttpRequest.BodyPublishers.ofByteArrays(
+                                        List.of(head, Recordings.sampleBytes(), tail)))
+                        .build();
+
+        HttpResponse<InputStream> response =
+                HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofInputStream());
+        MatcherAssert.assertThat(response.statusCode(), Matchers.equalTo(200));
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[READ_SIZE];
+        boolean checked = false;
+        try (InputStream in = response.body()) {
+            int n;
+            while ((n = in.read(buffer)) >= 0) {
+                body.write(buffer, 0, n);
+                if (!checked) {
+                    // while the client lags behind, only the thread writing to it is held, and
+                    // the analysis's admission reservation has already been released
+                    int inFlight =
+                            given().when()
+                                    .get("/stats")
+                                    .then()
+                                    .statusCode(200)
+                                    .extract()
+                                    .jsonPath()
+                                    .getInt("admission.inFlight");
+                    MatcherAssert.assertThat(inFlight, Matchers.equalTo(0));
+                    checked = true;
+                }
+                TimeUnit.MILLISECONDS.sleep(5);
+            }
+        }
+
+        Map<String, Object> map =
+                new ObjectMapper().readValue(body.toByteArray(), new TypeReference<>() {});
+        MatcherAssert.assertThat(map, Matchers.aMapWithSize(RuleRegistry.getRules().size()));
+    }
+}
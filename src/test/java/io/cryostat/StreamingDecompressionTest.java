@@ -0,0 +1,116 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat;
+
+import static io.restassured.RestAssured.given;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.TestProfile;
+import io.restassured.http.ContentType;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+
+@QuarkusTest
+@TestProfile(StreamingDecompressionTest.Profile.class)
+public class StreamingDecompressionTest {
+
+    public static class Profile extends CachesDisabledProfile {
+        @Override
+        protected Map<String, String> overrides() {
+            return Map.of(
+                    "io.cryostat.reports.streaming-decompression", "true",
+                    "io.cryostat.reports.ingest.mmap", "true");
+        }
+    }
+
+    @Test
+    public void testCompressedReportMatchesUncompressed() throws URISyntaxException {
+        File jfr = Recordings.sample();
+        File gz = Recordings.compressedSample();
+
+        Map<String, Object> expected =
+                given().contentType("multipart/form-data")
+                        .accept(ContentType.JSON)
+                        .multiPart("file", jfr)
+                        .when()
+                        .post("/report")
+                        .then()
+                        .statusCode(200)
+                        .extract()
+                        .jsonPath()
+                        .getMap("");
+        Map<String, Object> actual =
+                given().contentType("multipart/form-data")
+                        .accept(ContentType.JSON)
+                        .multiPart("file", gz)
+                        .when()
+                        .post("/report")
+                        .then()
+                        .statusCode(200)
+                        .extract()
+                        .jsonPath()
+                        .getMap("");
+
+        MatcherAssert.assertThat(actual.keySet(), Matchers.equalTo(expected.keySet()));
+    }
+
+    @Test
+    public void testRecordingOfUnknownSizeIsCountedWhileParsed()
+            throws URISyntaxException, IOException {
+        // unlike GZIP, a ZIP upload does not tell its decompressed size up front
+        ByteArrayOutputStream zipped = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(zipped)) {
+            out.putNextEntry(new ZipEntry("profiling_sample.jfr"));
+            out.write(Recordings.sampleBytes());
+            out.closeEntry();
+        }
+        File zip = Recordings.file("sample", ".zip", zipped.toByteArray());
+
+        Map<String, Object> expected =
+                given().contentType("multipart/form-data")
+                        .accept(ContentType.JSON)
+                        .multiPart("file", Recordings.sample())
+                        .when()
+                        .post("/report")
+                        .then()
+                        .statusCode(200)
+                        .extract()
+                        .jsonPath()
+                        .getMap("");
+        Map<String, Object> actual =
+                given().contentType("multipart/form-data")
+                        .accept(ContentType.JSON)
+                        .multiPart("file", zip)
+                        .when()
+                        .post("/report")
+                        .then()
+                        .statusCode(200)
+                        .extract()
+                        .jsonPath()
+                        .getMap("");
+
+        MatcherAssert.assertThat(actual.keySet(), Matchers.equalTo(expected.keySet()));
+    }
+}